@@ -36,6 +36,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
@@ -48,6 +49,7 @@ import org.apache.lucene.search.Weight;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.SpecialPermission;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionRequest;
@@ -58,6 +60,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.Lifecycle.State;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.component.LifecycleListener;
@@ -71,8 +74,10 @@ import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.settings.SettingsFilter;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.PageCacheRecycler;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.xcontent.NamedXContentRegistry;
 import org.elasticsearch.env.Environment;
@@ -96,6 +101,8 @@ import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.tasks.Task;
+import org.elasticsearch.threadpool.ExecutorBuilder;
+import org.elasticsearch.threadpool.FixedExecutorBuilder;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.RemoteClusterService;
 import org.elasticsearch.transport.Transport;
@@ -110,6 +117,8 @@ import org.elasticsearch.transport.TransportResponseHandler;
 import org.elasticsearch.transport.TransportService;
 import org.elasticsearch.watcher.ResourceWatcherService;
 
+import com.floragunn.searchguard.action.blockclients.BlockClientsAction;
+import com.floragunn.searchguard.action.blockclients.TransportBlockClientsAction;
 import com.floragunn.searchguard.action.configupdate.ConfigUpdateAction;
 import com.floragunn.searchguard.action.configupdate.TransportConfigUpdateAction;
 import com.floragunn.searchguard.action.licenseinfo.LicenseInfoAction;
@@ -121,6 +130,7 @@ import com.floragunn.searchguard.auditlog.AuditLog.Origin;
 import com.floragunn.searchguard.auditlog.AuditLogSslExceptionHandler;
 import com.floragunn.searchguard.auditlog.NullAuditLog;
 import com.floragunn.searchguard.auth.BackendRegistry;
+import com.floragunn.searchguard.auth.blocking.ClientBlockPublisher;
 import com.floragunn.searchguard.auth.internal.InternalAuthenticationBackend;
 import com.floragunn.searchguard.compliance.ComplianceConfig;
 import com.floragunn.searchguard.compliance.ComplianceIndexingOperationListener;
@@ -130,6 +140,7 @@ import com.floragunn.searchguard.configuration.ClusterInfoHolder;
 import com.floragunn.searchguard.configuration.CompatConfig;
 import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
 import com.floragunn.searchguard.configuration.DlsFlsRequestValve;
+import com.floragunn.searchguard.configuration.FlsQueryCache;
 import com.floragunn.searchguard.configuration.IndexBaseConfigurationRepository;
 import com.floragunn.searchguard.configuration.SearchGuardIndexSearcherWrapper;
 import com.floragunn.searchguard.filter.SearchGuardFilter;
@@ -150,21 +161,26 @@ import com.floragunn.searchguard.ssl.SslExceptionHandler;
 import com.floragunn.searchguard.ssl.http.netty.ValidatingDispatcher;
 import com.floragunn.searchguard.ssl.transport.SearchGuardSSLNettyTransport;
 import com.floragunn.searchguard.ssl.util.SSLConfigConstants;
+import com.floragunn.searchguard.support.Base64Helper;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
 import com.floragunn.searchguard.support.ModuleInfo;
 import com.floragunn.searchguard.support.ReflectionHelper;
-import com.floragunn.searchguard.support.SgUtils;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.transport.DefaultInterClusterRequestEvaluator;
 import com.floragunn.searchguard.transport.InterClusterRequestEvaluator;
 import com.floragunn.searchguard.transport.SearchGuardInterceptor;
 import com.floragunn.searchguard.user.User;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 
 public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements ClusterPlugin, MapperPlugin {
 
     private static final String KEYWORD = ".keyword";
+    private static final Predicate<String> ALLOW_ALL_FIELDS = field -> true;
     private final boolean tribeNodeClient;
     private final boolean dlsFlsAvailable;
     private final Constructor<?> dlsFlsConstructor;
@@ -186,6 +202,10 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
     private volatile SearchGuardFilter sgf;
     private volatile ComplianceConfig complianceConfig;
     private volatile IndexResolverReplacer irr;
+    private volatile FlsQueryCache flsQueryCache;
+    private volatile HeaderObjectCache headerObjectCache;
+    //compiled field filters by serialized FLS header and index
+    private final Cache<Tuple<String, String>, Predicate<String>> fieldFilters = CacheBuilder.newBuilder().maximumSize(10000).build();
 
     @Override
     public void close() throws IOException {
@@ -443,7 +463,8 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
                         new SearchGuardInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new KibanaInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool)));
                 handlers.add(new SearchGuardLicenseAction(settings, restController));
-                handlers.add(new SearchGuardHealthAction(settings, restController, Objects.requireNonNull(backendRegistry)));
+                handlers.add(new SearchGuardHealthAction(settings, restController, Objects.requireNonNull(backendRegistry), flsQueryCache,
+                        Objects.requireNonNull(headerObjectCache)));
                 handlers.add(new TenantInfoAction(settings, restController, Objects.requireNonNull(evaluator), Objects.requireNonNull(threadPool),
                         Objects.requireNonNull(cs), Objects.requireNonNull(adminDns)));
 
@@ -474,6 +495,7 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             actions.add(new ActionHandler<>(ConfigUpdateAction.INSTANCE, TransportConfigUpdateAction.class));
             actions.add(new ActionHandler<>(LicenseInfoAction.INSTANCE, TransportLicenseInfoAction.class));
             actions.add(new ActionHandler<>(WhoAmIAction.INSTANCE, TransportWhoAmIAction.class));
+            actions.add(new ActionHandler<>(BlockClientsAction.INSTANCE, TransportBlockClientsAction.class));
         }
         return actions;
     }
@@ -514,44 +536,53 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
                 }
 
                 indexModule.setSearcherWrapper(indexService -> loadFlsDlsIndexSearcherWrapper(indexService, ciol, complianceConfig));
-                indexModule.forceQueryCacheProvider((indexSettings, nodeCache) -> new QueryCache() {
 
-                    @Override
-                    public Index index() {
-                        return indexSettings.getIndex();
-                    }
+                final FlsQueryCache flsQueryCache = this.flsQueryCache;
 
-                    @Override
-                    public void close() throws ElasticsearchException {
-                        clear("close");
-                    }
+                if (flsQueryCache != null) {
+                    indexModule.forceQueryCacheProvider(
+                            (indexSettings, nodeCache) -> flsQueryCache.forIndex(indexSettings, nodeCache, threadPool.getThreadContext()));
+                } else {
+                    //requests with fls or masked fields bypass the query cache
+                    indexModule.forceQueryCacheProvider((indexSettings, nodeCache) -> new QueryCache() {
 
-                    @Override
-                    public void clear(String reason) {
-                        nodeCache.clearIndex(index().getName());
-                    }
+                        @Override
+                        public Index index() {
+                            return indexSettings.getIndex();
+                        }
 
-                    @Override
-                    public Weight doCache(Weight weight, QueryCachingPolicy policy) {
-                        final Map<String, Set<String>> allowedFlsFields = (Map<String, Set<String>>) HeaderHelper
-                                .deserializeSafeFromHeader(threadPool.getThreadContext(), ConfigConstants.SG_FLS_FIELDS_HEADER);
+                        @Override
+                        public void close() throws ElasticsearchException {
+                            clear("close");
+                        }
 
-                        if (SgUtils.evalMap(allowedFlsFields, index().getName()) != null) {
-                            return weight;
-                        } else {
+                        @Override
+                        public void clear(String reason) {
+                            nodeCache.clearIndex(index().getName());
+                        }
 
-                            final Map<String, Set<String>> maskedFieldsMap = (Map<String, Set<String>>) HeaderHelper
-                                    .deserializeSafeFromHeader(threadPool.getThreadContext(), ConfigConstants.SG_MASKED_FIELD_HEADER);
+                        @Override
+                        public Weight doCache(Weight weight, QueryCachingPolicy policy) {
+                            final String allowedFlsFieldsHeader = HeaderHelper.getSafeFromHeader(threadPool.getThreadContext(),
+                                    ConfigConstants.SG_FLS_FIELDS_HEADER);
 
-                            if (SgUtils.evalMap(maskedFieldsMap, index().getName()) != null) {
+                            if (headerObjectCache.getIndexRestrictionMap(allowedFlsFieldsHeader).evalKey(index().getName()) != null) {
                                 return weight;
                             } else {
-                                return nodeCache.doCache(weight, policy);
+
+                                final String maskedFieldsHeader = HeaderHelper.getSafeFromHeader(threadPool.getThreadContext(),
+                                        ConfigConstants.SG_MASKED_FIELD_HEADER);
+
+                                if (headerObjectCache.getIndexRestrictionMap(maskedFieldsHeader).evalKey(index().getName()) != null) {
+                                    return weight;
+                                } else {
+                                    return nodeCache.doCache(weight, policy);
+                                }
                             }
-                        }
 
-                    }
-                });
+                        }
+                    });
+                }
             } else {
 
                 assert complianceConfig == null : "compliance config must be null here";
@@ -724,12 +755,21 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         this.threadPool = threadPool;
         this.cs = clusterService;
         this.localClient = localClient;
+        this.headerObjectCache = new HeaderObjectCache(
+                settings.getAsInt(ConfigConstants.SEARCHGUARD_HEADER_CACHE_MAX_SIZE, HeaderObjectCache.DEFAULT_MAX_SIZE));
 
         final List<Object> components = new ArrayList<Object>();
 
         if (client || tribeNodeClient || disabled) {
             return components;
         }
+
+        final int flsQueryCacheCount = settings.getAsInt(ConfigConstants.SEARCHGUARD_FLS_QUERY_CACHE_COUNT, 10000);
+        if (dlsFlsAvailable && flsQueryCacheCount > 0) {
+            flsQueryCache = new FlsQueryCache(flsQueryCacheCount,
+                    settings.getAsMemory(ConfigConstants.SEARCHGUARD_FLS_QUERY_CACHE_SIZE, "1%").getBytes(), headerObjectCache);
+        }
+
         final ClusterInfoHolder cih = new ClusterInfoHolder();
         this.cs.addListener(cih);
 
@@ -765,19 +805,21 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
                 clusterService, auditLog, complianceConfig);
         cr.subscribeOnLicenseChange(complianceConfig);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, irr);
-        final InternalAuthenticationBackend iab = new InternalAuthenticationBackend(cr);
+        final InternalAuthenticationBackend iab = new InternalAuthenticationBackend(cr, settings);
+        cr.subscribeOnChange(ConfigConstants.CONFIGNAME_INTERNAL_USERS, iab);
         final XFFResolver xffResolver = new XFFResolver(threadPool);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, xffResolver);
-        backendRegistry = new BackendRegistry(settings, configPath, adminDns, xffResolver, iab, auditLog, threadPool);
+        final ClientBlockPublisher clientBlockPublisher = new ClientBlockPublisher(settings, localClient, clusterService, threadPool);
+        backendRegistry = new BackendRegistry(settings, configPath, adminDns, xffResolver, iab, auditLog, threadPool, clientBlockPublisher);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, backendRegistry);
         final ActionGroupHolder ah = new ActionGroupHolder(cr);
         evaluator = new PrivilegesEvaluator(clusterService, threadPool, cr, ah, resolver, auditLog, settings, privilegesInterceptor, cih, irr,
-                enterpriseModulesEnabled);
+                enterpriseModulesEnabled, headerObjectCache);
 
         final CompatConfig compatConfig = new CompatConfig(environment);
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, compatConfig);
 
-        sgf = new SearchGuardFilter(evaluator, adminDns, dlsFlsValve, auditLog, threadPool, cs, complianceConfig, compatConfig);
+        sgf = new SearchGuardFilter(evaluator, adminDns, dlsFlsValve, auditLog, threadPool, cs, complianceConfig, compatConfig, irr);
 
         final String principalExtractorClass = settings.get(SSLConfigConstants.SEARCHGUARD_SSL_TRANSPORT_PRINCIPAL_EXTRACTOR_CLASS, null);
 
@@ -788,7 +830,7 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         }
 
         sgi = new SearchGuardInterceptor(settings, threadPool, backendRegistry, auditLog, principalExtractor, interClusterRequestEvaluator, cs,
-                Objects.requireNonNull(sslExceptionHandler), Objects.requireNonNull(cih));
+                Objects.requireNonNull(sslExceptionHandler), Objects.requireNonNull(cih), headerObjectCache);
         components.add(principalExtractor);
 
         cr.subscribeOnChange(ConfigConstants.CONFIGNAME_CONFIG, new ConfigurationChangeListener() {
@@ -829,10 +871,28 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         if (!sslOnly) {
             builder.put(NetworkModule.TRANSPORT_TYPE_KEY, "com.floragunn.searchguard.ssl.http.netty.SearchGuardSSLNettyTransport");
             builder.put(NetworkModule.HTTP_TYPE_KEY, "com.floragunn.searchguard.http.SearchGuardHttpServerTransport");
+
+            //tell the other nodes that we can read the compact header format
+            if (settings.getAsBoolean(ConfigConstants.SEARCHGUARD_COMPACT_HEADER_CODEC_ENABLED, true)) {
+                builder.put("node.attr." + ConfigConstants.SG_COMPACT_HEADER_CODEC_NODE_ATTRIBUTE, Base64Helper.COMPACT_VERSION);
+            }
         }
         return builder.build();
     }
 
+    @Override
+    public List<ExecutorBuilder<?>> getExecutorBuilders(final Settings settings) {
+        final List<ExecutorBuilder<?>> builders = new ArrayList<>(super.getExecutorBuilders(settings));
+
+        if (!sslOnly && !client && !disabled && !tribeNodeClient && settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, false)) {
+            //size and queue_size can be adjusted with thread_pool.searchguard_auth.*
+            builders.add(new FixedExecutorBuilder(settings, ConfigConstants.SG_AUTH_THREAD_POOL,
+                    Math.min(32, 2 * EsExecutors.numberOfProcessors(settings)), 1000));
+        }
+
+        return builders;
+    }
+
     @Override
     public List<Setting<?>> getSettings() {
         List<Setting<?>> settings = new ArrayList<Setting<?>>();
@@ -861,6 +921,15 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLED, false, Property.NodeScope, Property.Filtered));
 
             settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_CACHE_TTL_MINUTES, 60, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_CACHE_REFRESH_AHEAD_PERCENT, 0, 0, 99, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_CACHE_REFRESH_AHEAD_MAX_CONCURRENT, 4, 1, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_PRIVILEGES_DECISION_CACHE_MAX_SIZE, 10000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_COMPACT_HEADER_CODEC_ENABLED, true, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_HEADER_CACHE_MAX_SIZE, HeaderObjectCache.DEFAULT_MAX_SIZE, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_VERIFIED_CREDENTIALS_CACHE_MAX_SIZE, 10000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, false, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.timeSetting(ConfigConstants.SEARCHGUARD_AUTH_FAILURE_LISTENERS_PUBLISH_INTERVAL, TimeValue.timeValueSeconds(1),
+                    TimeValue.timeValueMillis(10), Property.NodeScope, Property.Filtered));
 
             //SG6
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_ENTERPRISE_MODULES_ENABLED, true, Property.NodeScope, Property.Filtered));
@@ -872,6 +941,10 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
             settings.add(Setting.groupSetting(ConfigConstants.SEARCHGUARD_AUTHCZ_REST_IMPERSONATION_USERS + ".", Property.NodeScope)); //not filtered here
 
             settings.add(Setting.simpleString(ConfigConstants.SEARCHGUARD_ROLES_MAPPING_RESOLUTION, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_ROLES_MAPPING_CACHE_MAX_SIZE, 10000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_DLS_FLS_CACHE_MAX_SIZE, 1000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.intSetting(ConfigConstants.SEARCHGUARD_FLS_QUERY_CACHE_COUNT, 10000, 0, Property.NodeScope, Property.Filtered));
+            settings.add(Setting.memorySizeSetting(ConfigConstants.SEARCHGUARD_FLS_QUERY_CACHE_SIZE, "1%", Property.NodeScope, Property.Filtered));
             settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLE_ENVVAR_REPLACEMENT, false, Property.NodeScope, Property.Filtered));
 
             //settings.add(Setting.boolSetting(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false, Property.NodeScope, Property.Filtered));
@@ -1091,47 +1164,90 @@ public final class SearchGuardPlugin extends SearchGuardSSLPlugin implements Clu
         return index -> {
 
             if (threadPool == null) {
-                return field -> true;
+                return ALLOW_ALL_FIELDS;
             }
 
-            final Map<String, Set<String>> allowedFlsFields = (Map<String, Set<String>>) HeaderHelper
-                    .deserializeSafeFromHeader(threadPool.getThreadContext(), ConfigConstants.SG_FLS_FIELDS_HEADER);
+            final String allowedFlsFieldsHeader = HeaderHelper.getSafeFromHeader(threadPool.getThreadContext(), ConfigConstants.SG_FLS_FIELDS_HEADER);
 
-            final String eval = SgUtils.evalMap(allowedFlsFields, index);
+            if (Strings.isNullOrEmpty(allowedFlsFieldsHeader)) {
+                return ALLOW_ALL_FIELDS;
+            }
 
-            if (eval == null) {
-                return field -> true;
-            } else {
+            try {
+                return fieldFilters.get(new Tuple<>(allowedFlsFieldsHeader, index), () -> compileFieldFilter(allowedFlsFieldsHeader, index));
+            } catch (ExecutionException e) {
+                throw ExceptionsHelper.convertToElastic(e);
+            }
+        };
+    }
 
-                final Set<String> includesExcludes = allowedFlsFields.get(eval);
+    private Predicate<String> compileFieldFilter(final String allowedFlsFieldsHeader, final String index) {
 
-                final Set<String> includesSet = new HashSet<>(includesExcludes.size());
-                final Set<String> excludesSet = new HashSet<>(includesExcludes.size());
+        final Set<String> includesExcludes = headerObjectCache.getIndexRestrictionMap(allowedFlsFieldsHeader).get(index);
 
-                for (final String incExc : includesExcludes) {
-                    final char firstChar = incExc.charAt(0);
+        if (includesExcludes == null) {
+            return ALLOW_ALL_FIELDS;
+        } else {
 
-                    if (firstChar == '!' || firstChar == '~') {
-                        excludesSet.add(incExc.substring(1));
-                    } else {
-                        includesSet.add(incExc);
-                    }
-                }
+            final Set<String> includesSet = new HashSet<>(includesExcludes.size());
+            final Set<String> excludesSet = new HashSet<>(includesExcludes.size());
 
-                if (!excludesSet.isEmpty()) {
-                    return field -> !WildcardMatcher.matchAny(excludesSet, handleKeyword(field));
+            for (final String incExc : includesExcludes) {
+                final char firstChar = incExc.charAt(0);
+
+                if (firstChar == '!' || firstChar == '~') {
+                    excludesSet.add(incExc.substring(1));
                 } else {
-                    return field -> WildcardMatcher.matchAny(includesSet, handleKeyword(field));
+                    includesSet.add(incExc);
                 }
             }
-        };
+
+            if (!excludesSet.isEmpty()) {
+                //an invalid regular expression never matches, so the fields it should exclude would be visible
+                for (final String exclude : excludesSet) {
+                    if (exclude.length() > 1 && exclude.startsWith("/") && exclude.endsWith("/")
+                            && WildcardMatcher.compile(exclude) == WildcardMatcher.Matcher.NONE) {
+                        return field -> false;
+                    }
+                }
+
+                return keywordAwareMatcher(excludesSet).negate();
+            } else {
+                return keywordAwareMatcher(includesSet);
+            }
+        }
     }
 
-    private static String handleKeyword(final String field) {
-        if (field != null && field.endsWith(KEYWORD)) {
-            return field.substring(0, field.length() - KEYWORD.length());
+    //matches "field.keyword" like "field", wildcard patterns are also compiled with the keyword suffix to avoid creating substrings
+    static Predicate<String> keywordAwareMatcher(final Set<String> patterns) {
+        final Set<String> keywordPatterns = new HashSet<>(patterns.size());
+        final Set<String> regexPatterns = new HashSet<>();
+
+        for (final String pattern : patterns) {
+            if (pattern.length() > 1 && pattern.startsWith("/") && pattern.endsWith("/")) {
+                //a suffix cannot be appended to regular expressions which may contain anchors
+                regexPatterns.add(pattern);
+            } else {
+                keywordPatterns.add(pattern + KEYWORD);
+            }
         }
-        return field;
+
+        final WildcardMatcher.Matcher matcher = WildcardMatcher.compile(patterns);
+        final WildcardMatcher.Matcher keywordMatcher = WildcardMatcher.compile(keywordPatterns);
+        final WildcardMatcher.Matcher regexMatcher = WildcardMatcher.compile(regexPatterns);
+
+        return field -> {
+            if (field == null) {
+                return false;
+            }
+
+            if (!field.endsWith(KEYWORD)) {
+                return matcher.test(field);
+            }
+
+            return keywordMatcher.test(field)
+                    || (!regexPatterns.isEmpty() && regexMatcher.test(field.substring(0, field.length() - KEYWORD.length())));
+        };
     }
 
     public static class GuiceHolder implements LifecycleComponent {
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.action.blockclients;
+
+import org.elasticsearch.action.Action;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class BlockClientsAction extends Action<BlockClientsRequest, BlockClientsResponse, BlockClientsRequestBuilder> {
+
+    public static final BlockClientsAction INSTANCE = new BlockClientsAction();
+    //internal: only server nodes may send this action
+    public static final String NAME = "internal:searchguard/auth_failure_listeners/block";
+
+    protected BlockClientsAction() {
+        super(NAME);
+    }
+
+    @Override
+    public BlockClientsRequestBuilder newRequestBuilder(final ElasticsearchClient client) {
+        return new BlockClientsRequestBuilder(client, this);
+    }
+
+    @Override
+    public BlockClientsResponse newResponse() {
+        return new BlockClientsResponse();
+    }
+
+}
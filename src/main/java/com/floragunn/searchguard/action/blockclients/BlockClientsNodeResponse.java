@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.action.blockclients;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.BaseNodeResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class BlockClientsNodeResponse extends BaseNodeResponse {
+
+    private int blockedClients;
+
+    BlockClientsNodeResponse() {
+    }
+
+    public BlockClientsNodeResponse(final DiscoveryNode node, int blockedClients) {
+        super(node);
+        this.blockedClients = blockedClients;
+    }
+
+    public static BlockClientsNodeResponse readNodeResponse(StreamInput in) throws IOException {
+        BlockClientsNodeResponse nodeResponse = new BlockClientsNodeResponse();
+        nodeResponse.readFrom(in);
+        return nodeResponse;
+    }
+
+    /**
+     * @return the number of clients which were blocked on the node
+     */
+    public int getBlockedClients() {
+        return blockedClients;
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(blockedClients);
+    }
+
+    @Override
+    public void readFrom(StreamInput in) throws IOException {
+        super.readFrom(in);
+        blockedClients = in.readVInt();
+    }
+
+    @Override
+    public String toString() {
+        return "BlockClientsNodeResponse [blockedClients=" + blockedClients + "]";
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.action.blockclients;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.nodes.BaseNodesRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+/**
+ * Clients which were blocked by cluster wide auth failure listeners, keyed by the name of the listener.
+ */
+public class BlockClientsRequest extends BaseNodesRequest<BlockClientsRequest> {
+
+    private Map<String, String[]> blockedClients = Collections.emptyMap();
+
+    public BlockClientsRequest() {
+        super();
+    }
+
+    public BlockClientsRequest(final Map<String, String[]> blockedClients, final String... nodesIds) {
+        super(nodesIds);
+        this.blockedClients = blockedClients;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        final int size = in.readVInt();
+        blockedClients = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            blockedClients.put(in.readString(), in.readStringArray());
+        }
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(blockedClients.size());
+        for (Map.Entry<String, String[]> entry : blockedClients.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeStringArray(entry.getValue());
+        }
+    }
+
+    public Map<String, String[]> getBlockedClients() {
+        return blockedClients;
+    }
+
+    public void setBlockedClients(final Map<String, String[]> blockedClients) {
+        this.blockedClients = blockedClients;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        if (blockedClients == null || blockedClients.isEmpty()) {
+            return new ActionRequestValidationException();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.action.blockclients;
+
+import java.util.Map;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ElasticsearchClient;
+
+public class BlockClientsRequestBuilder extends
+NodesOperationRequestBuilder<BlockClientsRequest, BlockClientsResponse, BlockClientsRequestBuilder> {
+
+    public BlockClientsRequestBuilder(final ElasticsearchClient client, final BlockClientsAction action) {
+        super(client, action, new BlockClientsRequest());
+    }
+
+    public BlockClientsRequestBuilder setBlockedClients(final Map<String, String[]> blockedClients) {
+        request().setBlockedClients(blockedClients);
+        return this;
+    }
+}
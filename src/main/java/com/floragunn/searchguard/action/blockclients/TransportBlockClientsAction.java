@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.action.blockclients;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.FailedNodeException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.nodes.BaseNodeRequest;
+import org.elasticsearch.action.support.nodes.TransportNodesAction;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.inject.Provider;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+import com.floragunn.searchguard.auth.BackendRegistry;
+
+public class TransportBlockClientsAction
+extends
+TransportNodesAction<BlockClientsRequest, BlockClientsResponse, TransportBlockClientsAction.NodeBlockClientsRequest, BlockClientsNodeResponse> {
+
+    private final Provider<BackendRegistry> backendRegistry;
+
+    @Inject
+    public TransportBlockClientsAction(final Settings settings,
+            final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
+            final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver,
+            Provider<BackendRegistry> backendRegistry) {
+
+        super(settings, BlockClientsAction.NAME, threadPool, clusterService, transportService, actionFilters,
+                indexNameExpressionResolver, BlockClientsRequest::new, TransportBlockClientsAction.NodeBlockClientsRequest::new,
+                ThreadPool.Names.MANAGEMENT, BlockClientsNodeResponse.class);
+
+        this.backendRegistry = backendRegistry;
+    }
+
+    public static class NodeBlockClientsRequest extends BaseNodeRequest {
+
+        BlockClientsRequest request;
+
+        public NodeBlockClientsRequest() {
+        }
+
+        public NodeBlockClientsRequest(final String nodeId, final BlockClientsRequest request) {
+            super(nodeId);
+            this.request = request;
+        }
+
+        @Override
+        public void readFrom(final StreamInput in) throws IOException {
+            super.readFrom(in);
+            request = new BlockClientsRequest();
+            request.readFrom(in);
+        }
+
+        @Override
+        public void writeTo(final StreamOutput out) throws IOException {
+            super.writeTo(out);
+            request.writeTo(out);
+        }
+    }
+
+    protected NodeBlockClientsRequest newNodeRequest(final String nodeId, final BlockClientsRequest request) {
+        return new NodeBlockClientsRequest(nodeId, request);
+    }
+
+    @Override
+    protected BlockClientsNodeResponse newNodeResponse() {
+        return new BlockClientsNodeResponse(clusterService.localNode(), 0);
+    }
+
+    @Override
+    protected BlockClientsResponse newResponse(BlockClientsRequest request, List<BlockClientsNodeResponse> responses,
+            List<FailedNodeException> failures) {
+        return new BlockClientsResponse(this.clusterService.getClusterName(), responses, failures);
+    }
+
+    @Override
+    protected BlockClientsNodeResponse nodeOperation(final NodeBlockClientsRequest request) {
+        int blocked = 0;
+
+        for (Map.Entry<String, String[]> entry : request.request.getBlockedClients().entrySet()) {
+            blocked += backendRegistry.get().blockClients(entry.getKey(), entry.getValue());
+        }
+
+        return new BlockClientsNodeResponse(clusterService.localNode(), blocked);
+    }
+}
@@ -19,8 +19,12 @@ package com.floragunn.searchguard.action.configupdate;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 
 import org.elasticsearch.action.FailedNodeException;
 import org.elasticsearch.action.support.ActionFilters;
@@ -42,6 +46,9 @@ import com.floragunn.searchguard.auth.BackendRegistry;
 import com.floragunn.searchguard.configuration.ConfigurationRepository;
 import com.floragunn.searchguard.configuration.IndexBaseConfigurationRepository;
 import com.floragunn.searchguard.configuration.SearchGuardLicense;
+import com.floragunn.searchguard.privileges.PrivilegesEvaluator;
+import com.floragunn.searchguard.sgconf.ConfigModel;
+import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.LicenseHelper;
 
 public class TransportConfigUpdateAction
@@ -49,13 +56,14 @@ extends
 TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigUpdateAction.NodeConfigUpdateRequest, ConfigUpdateNodeResponse> {
 
     private final Provider<BackendRegistry> backendRegistry;
+    private final Provider<PrivilegesEvaluator> privilegesEvaluator;
     private final ConfigurationRepository configurationRepository;
     
     @Inject
     public TransportConfigUpdateAction(final Settings settings,
             final ThreadPool threadPool, final ClusterService clusterService, final TransportService transportService,
             final IndexBaseConfigurationRepository configurationRepository, final ActionFilters actionFilters, final IndexNameExpressionResolver indexNameExpressionResolver,
-            Provider<BackendRegistry> backendRegistry) {
+            Provider<BackendRegistry> backendRegistry, Provider<PrivilegesEvaluator> privilegesEvaluator) {
         
         super(settings, ConfigUpdateAction.NAME, threadPool, clusterService, transportService, actionFilters,
                 indexNameExpressionResolver, ConfigUpdateRequest::new, TransportConfigUpdateAction.NodeConfigUpdateRequest::new,
@@ -63,6 +71,7 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
 
         this.configurationRepository = configurationRepository;
         this.backendRegistry = backendRegistry;
+        this.privilegesEvaluator = privilegesEvaluator;
     }
 
     public static class NodeConfigUpdateRequest extends BaseNodeRequest {
@@ -110,7 +119,14 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
 	
     @Override
     protected ConfigUpdateNodeResponse nodeOperation(final NodeConfigUpdateRequest request) {
-        final Map<String, Settings> setn = configurationRepository.reloadConfiguration(Arrays.asList(request.request.getConfigTypes()));
+        final List<String> configTypes = Arrays.asList(request.request.getConfigTypes());
+        final Map<String, Settings> previous = new HashMap<>(configTypes.size());
+
+        for(String configType : configTypes) {
+            previous.put(configType, configurationRepository.getLoadedConfiguration(configType));
+        }
+
+        final Map<String, Settings> setn = configurationRepository.reloadConfiguration(configTypes);
         String licenseText = null;
         
         if(setn.get("config") != null) {
@@ -131,7 +147,34 @@ TransportNodesAction<ConfigUpdateRequest, ConfigUpdateResponse, TransportConfigU
             }
         }
 
-        backendRegistry.get().invalidateCache();
-        return new ConfigUpdateNodeResponse(clusterService.localNode(), setn.keySet().toArray(new String[0]), null); 
+        final Set<String> changedTypes = new HashSet<>(setn.size());
+
+        for(Map.Entry<String, Settings> entry : setn.entrySet()) {
+            if(!Objects.equals(entry.getValue(), previous.get(entry.getKey()))) {
+                changedTypes.add(entry.getKey());
+            }
+        }
+
+        //a reload of all types without any change can only be an explicit reload or cache flush
+        //(sgadmin -rl, the cache REST API), the caches of all backends are flushed then
+        if(changedTypes.isEmpty() && configTypes.containsAll(ConfigConstants.CONFIG_NAMES)) {
+            backendRegistry.get().invalidateCache();
+        } else {
+            backendRegistry.get().invalidateCache(changedTypes);
+        }
+
+        //the message is informational on success, so the rebuild stats do not change the wire format
+        String message = null;
+
+        if(setn.containsKey(ConfigConstants.CONFIGNAME_ROLES)) {
+            final ConfigModel.ReloadStats stats = privilegesEvaluator.get().getRolesReloadStats();
+
+            if(stats != null) {
+                message = "Reloaded " + stats;
+                logger.debug(message);
+            }
+        }
+
+        return new ConfigUpdateNodeResponse(clusterService.localNode(), setn.keySet().toArray(new String[0]), message); 
     }
 }
@@ -25,13 +25,24 @@ public class AuthDomain implements Comparable<AuthDomain> {
     private final HTTPAuthenticator httpAuthenticator;
     private final int order;
     private final boolean challenge;
+    private final String configFingerprint;
 
     public AuthDomain(final AuthenticationBackend backend, final HTTPAuthenticator httpAuthenticator, boolean challenge, final int order) {
+        this(backend, httpAuthenticator, challenge, order, null);
+    }
+
+    /**
+     * @param configFingerprint identifies the configuration this domain was built from, used to decide
+     * if cached users are still valid after a config reload (maybe null)
+     */
+    public AuthDomain(final AuthenticationBackend backend, final HTTPAuthenticator httpAuthenticator, boolean challenge, final int order,
+            final String configFingerprint) {
         super();
         this.backend = Objects.requireNonNull(backend);
         this.httpAuthenticator = httpAuthenticator;
         this.order = order;
         this.challenge = challenge;
+        this.configFingerprint = configFingerprint;
     }
 
     public boolean isChallenge() {
@@ -50,6 +61,10 @@ public class AuthDomain implements Comparable<AuthDomain> {
         return order;
     }
 
+    public String getConfigFingerprint() {
+        return configFingerprint;
+    }
+
     @Override
     public String toString() {
         return "AuthDomain [backend=" + backend + ", httpAuthenticator=" + httpAuthenticator + ", order=" + order + ", challenge="
@@ -32,7 +32,15 @@ import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import javax.naming.InvalidNameException;
 import javax.naming.ldap.LdapName;
@@ -43,7 +51,9 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchSecurityException;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestRequest;
@@ -53,10 +63,12 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportRequest;
 
 import com.floragunn.searchguard.auditlog.AuditLog;
+import com.floragunn.searchguard.auth.blocking.ClientBlockPublisher;
 import com.floragunn.searchguard.auth.blocking.ClientBlockRegistry;
 import com.floragunn.searchguard.auth.internal.InternalAuthenticationBackend;
 import com.floragunn.searchguard.auth.internal.NoOpAuthenticationBackend;
 import com.floragunn.searchguard.auth.internal.NoOpAuthorizationBackend;
+import com.floragunn.searchguard.auth.limiting.AbstractRateLimiter;
 import com.floragunn.searchguard.auth.limiting.AddressBasedRateLimiter;
 import com.floragunn.searchguard.auth.limiting.UserNameBasedRateLimiter;
 import com.floragunn.searchguard.configuration.AdminDNs;
@@ -93,6 +105,9 @@ public class BackendRegistry implements ConfigurationChangeListener {
     private Multimap<String, AuthFailureListener> authBackendFailureListeners;
     private List<ClientBlockRegistry<InetAddress>> ipClientBlockRegistries;
     private Multimap<String, ClientBlockRegistry<String>> authBackendClientBlockRegistries;
+    //by name of the auth failure listener
+    private volatile Map<String, AbstractRateLimiter<?>> clusterWideRateLimiters = Collections.emptyMap();
+    private final ClientBlockPublisher clientBlockPublisher;
     private volatile boolean initialized;
     private final AdminDNs adminDns;
     private final XFFResolver xffResolver;
@@ -104,49 +119,35 @@ public class BackendRegistry implements ConfigurationChangeListener {
     private final ThreadPool threadPool;
     private final UserInjector userInjector;
     private final int ttlInMin;
-    private Cache<AuthCredentials, User> userCache; //rest standard
-    private Cache<String, User> restImpersonationCache; //used for rest impersonation
-    private Cache<String, User> userCacheTransport; //transport no creds, possibly impersonated
-    private Cache<AuthCredentials, User> authenticatedUserCacheTransport; //transport creds, no impersonation
+    private final long refreshAheadNanos;
+    private final String refreshAheadExecutor;
+    private final Semaphore refreshPermits;
+    private final AtomicLong cacheRefreshes = new AtomicLong();
+    private UserCache<AuthCredentials> userCache; //rest standard
+    private UserCache<String> restImpersonationCache; //used for rest impersonation
+    private UserCache<String> userCacheTransport; //transport no creds, possibly impersonated
+    private UserCache<AuthCredentials> authenticatedUserCacheTransport; //transport creds, no impersonation
 
     private Cache<User, Set<String>> transportRoleCache; //
     private Cache<User, Set<String>> restRoleCache; //
-    private Cache<String, User> transportImpersonationCache; //used for transport impersonation
+    private UserCache<String> transportImpersonationCache; //used for transport impersonation
 
     private volatile String transportUsernameAttribute = null;
 
-    private void createCaches() {
-        userCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<AuthCredentials, User>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
-                        log.debug("Clear user cache for {} due to {}", notification.getKey().getUsername(), notification.getCause());
-                    }
-                }).build();
+    //used to decide which cache entries are still valid after a config reload
+    private volatile String restAuthorizersFingerprint;
+    private volatile String transportAuthorizersFingerprint;
+    private volatile Set<String> internalAuthDomainFingerprints = Collections.emptySet();
+    private volatile boolean internalRestAuthorizer;
+    private volatile boolean internalTransportAuthorizer;
+    private final AtomicLong cacheEvictionsOnReload = new AtomicLong();
+    private volatile long cacheEvictionsOnLastReload;
 
-        userCacheTransport = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
-                        log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
-                    }
-                }).build();
-
-        authenticatedUserCacheTransport = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<AuthCredentials, User>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<AuthCredentials, User> notification) {
-                        log.debug("Clear user cache for {} due to {}", notification.getKey().getUsername(), notification.getCause());
-                    }
-                }).build();
-
-        restImpersonationCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
-                        log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
-                    }
-                }).build();
+    private void createCaches() {
+        userCache = new UserCache<AuthCredentials>(ttlInMin, (k) -> k.getUsername());
+        userCacheTransport = new UserCache<String>(ttlInMin, (k) -> k);
+        authenticatedUserCacheTransport = new UserCache<AuthCredentials>(ttlInMin, (k) -> k.getUsername());
+        restImpersonationCache = new UserCache<String>(ttlInMin, (k) -> k);
 
         transportRoleCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
                 .removalListener(new RemovalListener<User, Set<String>>() {
@@ -164,19 +165,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     }
                 }).build();
 
-        transportImpersonationCache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
-                .removalListener(new RemovalListener<String, User>() {
-                    @Override
-                    public void onRemoval(RemovalNotification<String, User> notification) {
-                        log.debug("Clear user cache for {} due to {}", notification.getKey(), notification.getCause());
-                    }
-                }).build();
+        transportImpersonationCache = new UserCache<String>(ttlInMin, (k) -> k);
 
     }
 
     public BackendRegistry(final Settings settings, final Path configPath, final AdminDNs adminDns, final XFFResolver xffResolver,
-            final InternalAuthenticationBackend iab, final AuditLog auditLog, final ThreadPool threadPool) {
+            final InternalAuthenticationBackend iab, final AuditLog auditLog, final ThreadPool threadPool,
+            final ClientBlockPublisher clientBlockPublisher) {
         this.adminDns = adminDns;
+        this.clientBlockPublisher = clientBlockPublisher;
         this.esSettings = settings;
         this.configPath = configPath;
         this.xffResolver = xffResolver;
@@ -209,6 +206,11 @@ public class BackendRegistry implements ConfigurationChangeListener {
         authImplMap.put("username_authFailureListener", UserNameBasedRateLimiter.class.getName());
 
         this.ttlInMin = settings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_TTL_MINUTES, 60);
+        final int refreshAheadPercent = Math.min(settings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_REFRESH_AHEAD_PERCENT, 0), 99);
+        this.refreshAheadNanos = refreshAheadPercent > 0 ? TimeUnit.MINUTES.toNanos(ttlInMin) * refreshAheadPercent / 100 : 0;
+        this.refreshPermits = new Semaphore(settings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_REFRESH_AHEAD_MAX_CONCURRENT, 4));
+        this.refreshAheadExecutor = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, false) ? ConfigConstants.SG_AUTH_THREAD_POOL
+                : ThreadPool.Names.GENERIC;
 
         createCaches();
     }
@@ -227,6 +229,93 @@ public class BackendRegistry implements ConfigurationChangeListener {
         transportImpersonationCache.invalidateAll();
     }
 
+    /**
+     * Invalidate only the cache entries which may be affected by a reload of the given config types.
+     * Changes of sg_config are handled in {@link #onChange(Settings)}, changes of the roles, role mappings
+     * and action groups do not affect authentication and backend roles at all.
+     *
+     * @param configTypes the config types whose content actually changed. Explicit reloads and cache flushes
+     *        must use {@link #invalidateCache()}.
+     */
+    public void invalidateCache(final Collection<String> configTypes) {
+        if (configTypes == null || !configTypes.contains(ConfigConstants.CONFIGNAME_INTERNAL_USERS)) {
+            return;
+        }
+
+        final Set<String> internalFingerprints = internalAuthDomainFingerprints;
+        long evicted = 0;
+
+        if (internalRestAuthorizer) {
+            evicted += userCache.invalidateAll() + restImpersonationCache.invalidateAll() + invalidateAll(restRoleCache);
+        } else {
+            evicted += userCache.invalidateOrigins(internalFingerprints::contains)
+                    + restImpersonationCache.invalidateOrigins(internalFingerprints::contains);
+        }
+
+        if (internalTransportAuthorizer) {
+            evicted += userCacheTransport.invalidateAll() + authenticatedUserCacheTransport.invalidateAll()
+                    + transportImpersonationCache.invalidateAll() + invalidateAll(transportRoleCache);
+        } else {
+            evicted += userCacheTransport.invalidateOrigins(internalFingerprints::contains)
+                    + authenticatedUserCacheTransport.invalidateOrigins(internalFingerprints::contains)
+                    + transportImpersonationCache.invalidateOrigins(internalFingerprints::contains);
+        }
+
+        recordCacheEvictions(evicted, ConfigConstants.CONFIGNAME_INTERNAL_USERS);
+    }
+
+    public long getCacheEvictionsOnReload() {
+        return cacheEvictionsOnReload.get();
+    }
+
+    public long getCacheEvictionsOnLastReload() {
+        return cacheEvictionsOnLastReload;
+    }
+
+    public long getCacheRefreshes() {
+        return cacheRefreshes.get();
+    }
+
+    private void invalidateStaleEntries(final Set<String> authDomainFingerprints, final String restAuthorizersFingerprint,
+            final String transportAuthorizersFingerprint) {
+        final Predicate<String> stale = (origin) -> !authDomainFingerprints.contains(origin);
+        long evicted = 0;
+
+        if (!restAuthorizersFingerprint.equals(this.restAuthorizersFingerprint)) {
+            evicted += userCache.invalidateAll() + restImpersonationCache.invalidateAll() + invalidateAll(restRoleCache);
+        } else {
+            evicted += userCache.invalidateOrigins(stale) + restImpersonationCache.invalidateOrigins(stale);
+        }
+
+        if (!transportAuthorizersFingerprint.equals(this.transportAuthorizersFingerprint)) {
+            evicted += userCacheTransport.invalidateAll() + authenticatedUserCacheTransport.invalidateAll()
+                    + transportImpersonationCache.invalidateAll() + invalidateAll(transportRoleCache);
+        } else {
+            evicted += userCacheTransport.invalidateOrigins(stale) + authenticatedUserCacheTransport.invalidateOrigins(stale)
+                    + transportImpersonationCache.invalidateOrigins(stale);
+        }
+
+        this.restAuthorizersFingerprint = restAuthorizersFingerprint;
+        this.transportAuthorizersFingerprint = transportAuthorizersFingerprint;
+
+        recordCacheEvictions(evicted, ConfigConstants.CONFIGNAME_CONFIG);
+    }
+
+    private static long invalidateAll(final Cache<?, ?> cache) {
+        final long size = cache.size();
+        cache.invalidateAll();
+        return size;
+    }
+
+    private void recordCacheEvictions(final long evicted, final String configType) {
+        cacheEvictionsOnLastReload = evicted;
+        cacheEvictionsOnReload.addAndGet(evicted);
+
+        if (log.isDebugEnabled()) {
+            log.debug("Evicted {} user cache entries due to reload of {}", evicted, configType);
+        }
+    }
+
     @Override
     public void onChange(final Settings settings) {
 
@@ -239,6 +328,12 @@ public class BackendRegistry implements ConfigurationChangeListener {
         final Multimap<String, AuthFailureListener> authBackendFailureListeners0 = ArrayListMultimap.create();
         final List<ClientBlockRegistry<InetAddress>> ipClientBlockRegistries0 = new ArrayList<>();
         final Multimap<String, ClientBlockRegistry<String>> authBackendClientBlockRegistries0 = ArrayListMultimap.create();
+        final Map<String, AbstractRateLimiter<?>> clusterWideRateLimiters0 = new HashMap<>();
+
+        final Set<String> authDomainFingerprints0 = new HashSet<>();
+        final Set<String> internalAuthDomainFingerprints0 = new HashSet<>();
+        final StringBuilder restAuthorizersFingerprint0 = new StringBuilder();
+        final StringBuilder transportAuthorizersFingerprint0 = new StringBuilder();
 
         final Map<String, Settings> authzDyn = settings.getGroups("searchguard.dynamic.authz");
 
@@ -265,10 +360,12 @@ public class BackendRegistry implements ConfigurationChangeListener {
 
                     if (httpEnabled) {
                         restAuthorizers0.add(authorizationBackend);
+                        restAuthorizersFingerprint0.append(ad).append('=').append(ads).append(';');
                     }
 
                     if (transportEnabled) {
                         transportAuthorizers0.add(authorizationBackend);
+                        transportAuthorizersFingerprint0.append(ad).append('=').append(ads).append(';');
                     }
 
                     if (authorizationBackend instanceof Destroyable) {
@@ -306,8 +403,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
                             : (HTTPAuthenticator) newInstance(httpAuthenticatorType, "h",
                                     Settings.builder().put(esSettings).put(ads.getAsSettings("http_authenticator.config")).build(), configPath);
 
+                    final String fingerprint = ad + "=" + ads;
                     final AuthDomain _ad = new AuthDomain(authenticationBackend, httpAuthenticator,
-                            ads.getAsBoolean("http_authenticator.challenge", true), ads.getAsInt("order", 0));
+                            ads.getAsBoolean("http_authenticator.challenge", true), ads.getAsInt("order", 0), fingerprint);
+
+                    authDomainFingerprints0.add(fingerprint);
+
+                    if (authenticationBackend == iab) {
+                        internalAuthDomainFingerprints0.add(fingerprint);
+                    }
 
                     if (httpEnabled && _ad.getHttpAuthenticator() != null) {
                         restAuthDomains0.add(_ad);
@@ -333,9 +437,13 @@ public class BackendRegistry implements ConfigurationChangeListener {
         }
 
         createAuthFailureListeners(settings.getGroups("searchguard.dynamic.auth_failure_listeners"), ipAuthFailureListeners0,
-                authBackendFailureListeners0, ipClientBlockRegistries0, authBackendClientBlockRegistries0, destroyableComponents0);
+                authBackendFailureListeners0, ipClientBlockRegistries0, authBackendClientBlockRegistries0, clusterWideRateLimiters0,
+                destroyableComponents0);
 
-        invalidateCache();
+        invalidateStaleEntries(authDomainFingerprints0, restAuthorizersFingerprint0.toString(), transportAuthorizersFingerprint0.toString());
+        internalAuthDomainFingerprints = Collections.unmodifiableSet(internalAuthDomainFingerprints0);
+        internalRestAuthorizer = restAuthorizers0.contains(iab);
+        internalTransportAuthorizer = transportAuthorizers0.contains(iab);
 
         transportUsernameAttribute = settings.get("searchguard.dynamic.transport_userrname_attribute", null);
         anonymousAuthEnabled = settings.getAsBoolean("searchguard.dynamic.http.anonymous_auth_enabled", false)
@@ -352,6 +460,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
         ipClientBlockRegistries = Collections.unmodifiableList(ipClientBlockRegistries0);
         authBackendClientBlockRegistries = Multimaps.unmodifiableMultimap(authBackendClientBlockRegistries0);
         authBackendFailureListeners = Multimaps.unmodifiableMultimap(authBackendFailureListeners0);
+        clusterWideRateLimiters = Collections.unmodifiableMap(clusterWideRateLimiters0);
 
         //SG6 no default authc
         initialized = !restAuthDomains.isEmpty() || anonymousAuthEnabled;
@@ -366,7 +475,8 @@ public class BackendRegistry implements ConfigurationChangeListener {
 
     private void createAuthFailureListeners(Map<String, Settings> authFailureListenerSettings, List<AuthFailureListener> ipAuthFailureListeners,
             Multimap<String, AuthFailureListener> authBackendFailureListeners, List<ClientBlockRegistry<InetAddress>> ipClientBlockRegistries,
-            Multimap<String, ClientBlockRegistry<String>> authBackendUserClientBlockRegistries, List<Destroyable> destroyableComponents0) {
+            Multimap<String, ClientBlockRegistry<String>> authBackendUserClientBlockRegistries,
+            Map<String, AbstractRateLimiter<?>> clusterWideRateLimiters, List<Destroyable> destroyableComponents0) {
 
         for (Map.Entry<String, Settings> entry : authFailureListenerSettings.entrySet()) {
             Settings entrySettings = entry.getValue();
@@ -409,6 +519,17 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 }
             }
 
+            if (authFailureListener instanceof AbstractRateLimiter && ((AbstractRateLimiter<?>) authFailureListener).isClusterWide()) {
+                if (clientBlockPublisher != null) {
+                    final String listenerName = entry.getKey();
+                    final AbstractRateLimiter<?> rateLimiter = (AbstractRateLimiter<?>) authFailureListener;
+                    rateLimiter.setBlockPublisher((clientId) -> clientBlockPublisher.publish(listenerName, clientId));
+                    clusterWideRateLimiters.put(listenerName, rateLimiter);
+                } else {
+                    log.warn("Blocks of AuthFailureListener " + entry.getKey() + " can not be published to other nodes on this node");
+                }
+            }
+
             if (authFailureListener instanceof Destroyable) {
                 destroyableComponents0.add((Destroyable) authFailureListener);
             }
@@ -465,11 +586,11 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 impersonatedTransportUser = impersonate(request, origPKIUser);
                 origPKIUser = resolveTransportUsernameAttribute(origPKIUser);
                 authenticatedUser = checkExistsAndAuthz(userCacheTransport,
-                        impersonatedTransportUser == null ? origPKIUser : impersonatedTransportUser, authDomain.getBackend(), transportAuthorizers);
+                        impersonatedTransportUser == null ? origPKIUser : impersonatedTransportUser, authDomain, transportAuthorizers);
             } else {
                 //auth credentials submitted
                 //impersonation not possible, if requested it will be ignored
-                authenticatedUser = authcz(authenticatedUserCacheTransport, transportRoleCache, creds, authDomain.getBackend(), transportAuthorizers);
+                authenticatedUser = authcz(authenticatedUserCacheTransport, transportRoleCache, creds, authDomain, transportAuthorizers);
             }
 
             if (authenticatedUser == null) {
@@ -639,7 +760,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
             }
 
             //http completed       
-            authenticatedUser = authcz(userCache, restRoleCache, ac, authDomain.getBackend(), restAuthorizers);
+            authenticatedUser = authcz(userCache, restRoleCache, ac, authDomain, restAuthorizers);
 
             if (authenticatedUser == null) {
                 if (log.isDebugEnabled()) {
@@ -748,14 +869,16 @@ public class BackendRegistry implements ConfigurationChangeListener {
      * @param authDomain
      * @return null if user cannot b authenticated
      */
-    private User checkExistsAndAuthz(final Cache<String, User> cache, final User user, final AuthenticationBackend authenticationBackend,
+    private User checkExistsAndAuthz(final UserCache<String> cache, final User user, final AuthDomain authDomain,
             final Set<AuthorizationBackend> authorizers) {
         if (user == null) {
             return null;
         }
 
+        final AuthenticationBackend authenticationBackend = authDomain.getBackend();
+
         try {
-            return cache.get(user.getName(), new Callable<User>() { //no cache miss in case of noop
+            final User cachedUser = cache.get(user.getName(), authDomain.getConfigFingerprint(), new Callable<User>() { //no cache miss in case of noop
                 @Override
                 public User call() throws Exception {
                     if (log.isTraceEnabled()) {
@@ -773,6 +896,21 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     return null;
                 }
             });
+
+            cache.refreshIfStale(user.getName(), authDomain.getConfigFingerprint(), () -> {
+                //the user object of the request may still be in use, so refresh a copy
+                final User refreshedUser = new User(user.getName());
+                refreshedUser.addAttributes(user.getCustomAttributesMap());
+
+                if (authenticationBackend.exists(refreshedUser)) {
+                    authz(refreshedUser, null, authorizers);
+                    return refreshedUser;
+                }
+
+                return null;
+            }, () -> {});
+
+            return cachedUser;
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Can not check and authorize " + user.getName() + " due to " + e.toString(), e);
@@ -801,6 +939,25 @@ public class BackendRegistry implements ConfigurationChangeListener {
             return;
         }
 
+        if (roleCache == null) {
+            fillRoles(authenticatedUser, authorizers);
+            return;
+        }
+
+        try {
+            //concurrent misses for the same user wait for a single backend lookup
+            final Set<String> backendRoles = roleCache.get(authenticatedUser, () -> {
+                fillRoles(authenticatedUser, authorizers);
+                return new HashSet<String>(authenticatedUser.getRoles());
+            });
+
+            authenticatedUser.addRoles(backendRoles);
+        } catch (ExecutionException e) {
+            log.error("Cannot retrieve roles for {} due to {}", authenticatedUser, e.toString(), e);
+        }
+    }
+
+    private void fillRoles(final User authenticatedUser, final Set<AuthorizationBackend> authorizers) {
         for (final AuthorizationBackend ab : authorizers) {
             try {
                 if (log.isTraceEnabled()) {
@@ -811,10 +968,6 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 log.error("Cannot retrieve roles for {} from {} due to {}", authenticatedUser, ab.getType(), e.toString(), e);
             }
         }
-
-        if (roleCache != null) {
-            roleCache.put(authenticatedUser, new HashSet<String>(authenticatedUser.getRoles()));
-        }
     }
 
     /**
@@ -825,11 +978,15 @@ public class BackendRegistry implements ConfigurationChangeListener {
      * @param authDomain
      * @return null if user cannot b authenticated
      */
-    private User authcz(final Cache<AuthCredentials, User> cache, Cache<User, Set<String>> roleCache, final AuthCredentials ac,
-            final AuthenticationBackend authBackend, final Set<AuthorizationBackend> authorizers) {
+    private User authcz(final UserCache<AuthCredentials> cache, Cache<User, Set<String>> roleCache, final AuthCredentials ac,
+            final AuthDomain authDomain, final Set<AuthorizationBackend> authorizers) {
         if (ac == null) {
             return null;
         }
+
+        final AuthenticationBackend authBackend = authDomain.getBackend();
+        boolean refreshScheduled = false;
+
         try {
 
             //noop backend configured and no authorizers
@@ -839,7 +996,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 return authBackend.authenticate(ac);
             }
 
-            return cache.get(ac, new Callable<User>() {
+            final User cachedUser = cache.get(ac, authDomain.getConfigFingerprint(), new Callable<User>() {
                 @Override
                 public User call() throws Exception {
                     if (log.isTraceEnabled()) {
@@ -852,13 +1009,32 @@ public class BackendRegistry implements ConfigurationChangeListener {
                     return authenticatedUser;
                 }
             });
+
+            //the secrets are needed for the refresh, they are cleared once it is done
+            refreshScheduled = cache.refreshIfStale(ac, authDomain.getConfigFingerprint(), () -> {
+                final User refreshedUser = authBackend.authenticate(ac);
+
+                if (refreshedUser != null && roleCache != null && !authorizers.isEmpty()) {
+                    //bypass the role cache so that the cached backend roles are refreshed as well
+                    fillRoles(refreshedUser, authorizers);
+                    roleCache.put(refreshedUser, new HashSet<String>(refreshedUser.getRoles()));
+                } else {
+                    authz(refreshedUser, roleCache, authorizers);
+                }
+
+                return refreshedUser;
+            }, ac::clearSecrets);
+
+            return cachedUser;
         } catch (Exception e) {
             if (log.isDebugEnabled()) {
                 log.debug("Can not authenticate " + ac.getUsername() + " due to " + e.toString(), e);
             }
             return null;
         } finally {
-            ac.clearSecrets();
+            if (!refreshScheduled) {
+                ac.clearSecrets();
+            }
         }
     }
 
@@ -894,7 +1070,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
                 for (final AuthDomain authDomain : transportAuthDomains) {
                     final AuthenticationBackend authenticationBackend = authDomain.getBackend();
                     final User impersonatedUserObject = checkExistsAndAuthz(transportImpersonationCache, new User(impersonatedUser),
-                            authenticationBackend, transportAuthorizers);
+                            authDomain, transportAuthorizers);
 
                     if (impersonatedUserObject == null) {
                         log.debug(
@@ -944,7 +1120,7 @@ public class BackendRegistry implements ConfigurationChangeListener {
             //loop over all http/rest auth domains
             for (final AuthDomain authDomain : restAuthDomains) {
                 final AuthenticationBackend authenticationBackend = authDomain.getBackend();
-                final User impersonatedUser = checkExistsAndAuthz(restImpersonationCache, new User(impersonatedUserHeader), authenticationBackend,
+                final User impersonatedUser = checkExistsAndAuthz(restImpersonationCache, new User(impersonatedUserHeader), authDomain,
                         restAuthorizers);
 
                 if (impersonatedUser == null) {
@@ -1023,6 +1199,35 @@ public class BackendRegistry implements ConfigurationChangeListener {
         return pkiUser;
     }
 
+    /**
+     * Applies blocks which were published by the cluster wide auth failure listener with the given name on another node
+     * 
+     * @return the number of blocked clients
+     */
+    public int blockClients(final String listenerName, final String[] clientIds) {
+        final AbstractRateLimiter<?> rateLimiter = clusterWideRateLimiters.get(listenerName);
+
+        if (rateLimiter == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Ignoring {} blocked clients for unknown cluster wide AuthFailureListener {}", clientIds.length, listenerName);
+            }
+            return 0;
+        }
+
+        int blocked = 0;
+
+        for (final String clientId : clientIds) {
+            try {
+                rateLimiter.blockFromRemote(clientId);
+                blocked++;
+            } catch (final IllegalArgumentException e) {
+                log.warn("Invalid client id {} for AuthFailureListener {}: {}", clientId, listenerName, e.toString());
+            }
+        }
+
+        return blocked;
+    }
+
     private boolean isBlocked(InetAddress address) {
         if (this.ipClientBlockRegistries == null || this.ipClientBlockRegistries.isEmpty()) {
             return false;
@@ -1058,4 +1263,163 @@ public class BackendRegistry implements ConfigurationChangeListener {
         return false;
     }
 
+    /**
+     * User cache which remembers the config fingerprint of the auth domain which produced each entry
+     */
+    private final class UserCache<K> {
+
+        private final Cache<K, User> cache;
+        private final ConcurrentMap<K, UserCacheEntry> entries = new ConcurrentHashMap<>();
+        private final Set<K> refreshing = ConcurrentHashMap.newKeySet();
+        private final AtomicLong generation = new AtomicLong();
+
+        UserCache(final int ttlInMin, final Function<K, String> keyToName) {
+            this.cache = CacheBuilder.newBuilder().expireAfterWrite(ttlInMin, TimeUnit.MINUTES)
+                    .removalListener(new RemovalListener<K, User>() {
+                        @Override
+                        public void onRemoval(RemovalNotification<K, User> notification) {
+                            log.debug("Clear user cache for {} due to {}", keyToName.apply(notification.getKey()), notification.getCause());
+                            entries.computeIfPresent(notification.getKey(), (k, v) -> v.user == notification.getValue() ? null : v);
+                        }
+                    }).build();
+        }
+
+        User get(final K key, final String origin, final Callable<User> loader) throws ExecutionException {
+            return cache.get(key, () -> {
+                final User user = loader.call();
+
+                if (user != null) {
+                    entries.put(key, new UserCacheEntry(user, origin));
+                }
+
+                return user;
+            });
+        }
+
+        /**
+         * Revalidate the entry in the background if it is older than the refresh-ahead threshold.
+         * The current entry keeps serving until the refreshed user replaces it. If the refresh fails
+         * the entry is invalidated so that the next request authenticates synchronously.
+         *
+         * @param onDone called once the refresh has finished or was rejected, only if a refresh was scheduled
+         * @return true if a refresh was scheduled
+         */
+        boolean refreshIfStale(final K key, final String origin, final Callable<User> refresher, final Runnable onDone) {
+            if (refreshAheadNanos <= 0) {
+                return false;
+            }
+
+            final UserCacheEntry entry = entries.get(key);
+
+            if (entry == null || System.nanoTime() - entry.loadedAt < refreshAheadNanos) {
+                return false;
+            }
+
+            if (!refreshing.add(key)) {
+                return false;
+            }
+
+            if (!refreshPermits.tryAcquire()) {
+                refreshing.remove(key);
+                return false;
+            }
+
+            final long expectedGeneration = generation.get();
+
+            try (StoredContext ctx = threadPool.getThreadContext().stashContext()) {
+                threadPool.executor(refreshAheadExecutor).execute(new AbstractRunnable() {
+
+                    private final AtomicBoolean done = new AtomicBoolean();
+
+                    @Override
+                    protected void doRun() throws Exception {
+                        final User user = refresher.call();
+
+                        if (user == null) {
+                            cache.invalidate(key);
+                            return;
+                        }
+
+                        cache.put(key, user);
+                        entries.put(key, new UserCacheEntry(user, origin));
+
+                        //do not resurrect entries which were invalidated by a config reload in the meantime
+                        if (generation.get() != expectedGeneration) {
+                            cache.invalidate(key);
+                        } else {
+                            cacheRefreshes.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        log.debug("Cannot refresh user cache entry for {} due to {}", origin, e.toString(), e);
+                        cache.invalidate(key);
+                    }
+
+                    @Override
+                    public void onRejection(Exception e) {
+                        //onAfter() is invoked by the executor after the rejection as well
+                        log.debug("Refresh of user cache entry rejected due to {}", e.toString());
+                    }
+
+                    @Override
+                    public void onAfter() {
+                        done();
+                    }
+
+                    private void done() {
+                        if (!done.compareAndSet(false, true)) {
+                            return;
+                        }
+
+                        refreshing.remove(key);
+                        refreshPermits.release();
+                        onDone.run();
+                    }
+                });
+            }
+
+            return true;
+        }
+
+        /**
+         * Invalidates all entries whose origin matches and all entries with an unknown origin
+         * @return the number of invalidated entries
+         */
+        long invalidateOrigins(final Predicate<String> originPredicate) {
+            generation.incrementAndGet();
+            long count = 0;
+
+            for (K key : cache.asMap().keySet()) {
+                final UserCacheEntry entry = entries.get(key);
+
+                if (entry == null || entry.origin == null || originPredicate.test(entry.origin)) {
+                    cache.invalidate(key);
+                    count++;
+                }
+            }
+
+            return count;
+        }
+
+        long invalidateAll() {
+            generation.incrementAndGet();
+            final long size = cache.size();
+            cache.invalidateAll();
+            entries.clear();
+            return size;
+        }
+    }
+
+    private static final class UserCacheEntry {
+        private final User user;
+        private final String origin;
+        private final long loadedAt = System.nanoTime();
+
+        UserCacheEntry(final User user, final String origin) {
+            this.user = user;
+            this.origin = origin;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.blocking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.floragunn.searchguard.action.blockclients.BlockClientsAction;
+import com.floragunn.searchguard.action.blockclients.BlockClientsRequest;
+import com.floragunn.searchguard.action.blockclients.BlockClientsResponse;
+import com.floragunn.searchguard.support.ConfigConstants;
+
+/**
+ * Sends the clients blocked by cluster wide auth failure listeners of this node to all other nodes.
+ * <p>
+ * Blocks are collected and sent in one batch per publish interval, so a brute force attack on one node causes
+ * at most one request per interval to each other node. Blocks are not persisted; nodes which join the cluster
+ * later only learn about new blocks.
+ */
+public class ClientBlockPublisher {
+
+    //bounds the heap used by blocks which could not be sent yet
+    private static final int MAX_PENDING = 100_000;
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    private final Client client;
+    private final ClusterService clusterService;
+    private final ThreadPool threadPool;
+    private final TimeValue publishInterval;
+    private final ConcurrentLinkedQueue<String[]> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    public ClientBlockPublisher(final Settings settings, final Client client, final ClusterService clusterService, final ThreadPool threadPool) {
+        this.client = client;
+        this.clusterService = clusterService;
+        this.threadPool = threadPool;
+        this.publishInterval = settings.getAsTime(ConfigConstants.SEARCHGUARD_AUTH_FAILURE_LISTENERS_PUBLISH_INTERVAL,
+                TimeValue.timeValueSeconds(1));
+    }
+
+    /**
+     * Queues the block of a client for the next batch
+     * 
+     * @param listenerName the name of the auth failure listener in sg_config
+     * @param clientId the client id as understood by the listener
+     */
+    public void publish(final String listenerName, final String clientId) {
+        if (pendingCount.incrementAndGet() > MAX_PENDING) {
+            pendingCount.decrementAndGet();
+            log.warn("Too many pending client blocks, will not publish block of {} for {}", clientId, listenerName);
+            return;
+        }
+
+        pending.add(new String[] { listenerName, clientId });
+
+        if (scheduled.compareAndSet(false, true)) {
+            //the scheduled task preserves the context, it must not run with the context of the blocked client
+            try (StoredContext ctx = threadPool.getThreadContext().stashContext()) {
+                threadPool.schedule(publishInterval, ThreadPool.Names.GENERIC, this::flush);
+            }
+        }
+    }
+
+    private void flush() {
+        //cleared before draining, blocks added while draining schedule the next batch
+        scheduled.set(false);
+
+        final Map<String, Set<String>> batch = new HashMap<>();
+        String[] entry;
+
+        while ((entry = pending.poll()) != null) {
+            pendingCount.decrementAndGet();
+            batch.computeIfAbsent(entry[0], (k) -> new LinkedHashSet<>()).add(entry[1]);
+        }
+
+        final List<String> nodeIds = new ArrayList<>();
+
+        for (DiscoveryNode node : clusterService.state().nodes()) {
+            if (!node.equals(clusterService.localNode())) {
+                nodeIds.add(node.getId());
+            }
+        }
+
+        if (batch.isEmpty() || nodeIds.isEmpty()) {
+            return;
+        }
+
+        final Map<String, String[]> blockedClients = new HashMap<>(batch.size());
+
+        for (Map.Entry<String, Set<String>> e : batch.entrySet()) {
+            blockedClients.put(e.getKey(), e.getValue().toArray(new String[0]));
+        }
+
+        if (log.isDebugEnabled()) {
+            log.debug("Publishing blocked clients of {} auth failure listeners to {} nodes", blockedClients.size(), nodeIds.size());
+        }
+
+        //internal action, no user or conf request header required
+        client.execute(BlockClientsAction.INSTANCE, new BlockClientsRequest(blockedClients, nodeIds.toArray(new String[0])),
+                new ActionListener<BlockClientsResponse>() {
+
+                    @Override
+                    public void onResponse(BlockClientsResponse response) {
+                        if (response.hasFailures()) {
+                            log.warn("Unable to publish blocked clients to some nodes: {}", response.failures());
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(Exception e) {
+                        log.warn("Unable to publish blocked clients", e);
+                    }
+                });
+    }
+}
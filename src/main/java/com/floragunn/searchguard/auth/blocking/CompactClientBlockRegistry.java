@@ -0,0 +1,131 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.blocking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.floragunn.searchguard.util.ratetracking.ClientIdHasher;
+
+/**
+ * Lock free block registry for a large number of clients which keeps all state in two primitive arrays.
+ * <p>
+ * Clients are stored as 64 bit keys (see {@link ClientIdHasher}) in an open addressing table together with the
+ * time their block expires. Expired slots are reused; if all slots in the probe range of a client are in use
+ * the block which expires first is replaced, which bounds the memory like the maximum size of the heap based registry.
+ * Slots are claimed by setting their expiry to {@link #CLAIMED} with a CAS before the key is written.
+ */
+public class CompactClientBlockRegistry<ClientIdType> implements ClientBlockRegistry<ClientIdType> {
+
+    private static final long CLAIMED = -1;
+    private static final int MAX_PROBES = 16;
+
+    private final Logger log = LogManager.getLogger(this.getClass());
+
+    private final long expiryMs;
+    private final Class<ClientIdType> clientIdType;
+    private final ClientIdHasher hasher = new ClientIdHasher();
+    private final int bits;
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray expiries;
+
+    public CompactClientBlockRegistry(long expiryMs, int maxEntries, Class<ClientIdType> clientIdType) {
+        this.expiryMs = expiryMs;
+        this.clientIdType = clientIdType;
+        this.bits = ClientIdHasher.tableBits(maxEntries);
+        this.mask = (1 << bits) - 1;
+        this.keys = new AtomicLongArray(1 << bits);
+        this.expiries = new AtomicLongArray(1 << bits);
+    }
+
+    @Override
+    public boolean isBlocked(ClientIdType clientId) {
+        final long key = hasher.key(clientId);
+        final long now = System.currentTimeMillis();
+        final int start = ClientIdHasher.slot(key, bits);
+
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int slot = (start + i) & mask;
+            final long expiry = expiries.get(slot);
+
+            //re-read the expiry to make sure the slot was not claimed by another key in the meantime
+            if (expiry > now && keys.get(slot) == key && expiries.get(slot) == expiry) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    @Override
+    public void block(ClientIdType clientId) {
+        final long key = hasher.key(clientId);
+        final int start = ClientIdHasher.slot(key, bits);
+
+        for (;;) {
+            final long now = System.currentTimeMillis();
+            final long newExpiry = now + expiryMs;
+            int victim = -1;
+            long victimExpiry = Long.MAX_VALUE;
+
+            for (int i = 0; i < MAX_PROBES; i++) {
+                final int slot = (start + i) & mask;
+                final long expiry = expiries.get(slot);
+
+                if (expiry == CLAIMED) {
+                    continue;
+                }
+
+                if (keys.get(slot) == key && expiries.get(slot) == expiry) {
+                    if (expiries.compareAndSet(slot, expiry, Math.max(expiry, newExpiry))) {
+                        return;
+                    }
+                    victim = -2;
+                    break;
+                }
+
+                if (expiry < victimExpiry) {
+                    victim = slot;
+                    victimExpiry = expiry;
+                }
+            }
+
+            if (victim == -2) {
+                continue;
+            }
+
+            if (victim >= 0 && expiries.compareAndSet(victim, victimExpiry, CLAIMED)) {
+                keys.set(victim, key);
+                expiries.set(victim, newExpiry);
+
+                if (log.isDebugEnabled()) {
+                    log.debug("Blocking " + clientId);
+                }
+                return;
+            }
+        }
+    }
+
+    @Override
+    public Class<ClientIdType> getClientIdType() {
+        return clientIdType;
+    }
+}
@@ -21,7 +21,6 @@ import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,46 +31,52 @@ import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.auth.AuthenticationBackend;
 import com.floragunn.searchguard.auth.AuthorizationBackend;
+import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
 import com.floragunn.searchguard.configuration.ConfigurationRepository;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.user.AuthCredentials;
 import com.floragunn.searchguard.user.User;
+import com.google.common.hash.HashCode;
 
-public class InternalAuthenticationBackend implements AuthenticationBackend, AuthorizationBackend {
+public class InternalAuthenticationBackend implements AuthenticationBackend, AuthorizationBackend, ConfigurationChangeListener {
 
     private final ConfigurationRepository configurationRepository;
+    private volatile InternalUsersStore store;
+    private final VerifiedCredentialsCache verifiedCredentials;
 
     public InternalAuthenticationBackend(final ConfigurationRepository configurationRepository) {
+        this(configurationRepository, Settings.EMPTY);
+    }
+
+    public InternalAuthenticationBackend(final ConfigurationRepository configurationRepository, final Settings settings) {
         super();
         this.configurationRepository = configurationRepository;
+        final int verifiedCredentialsCacheSize = settings.getAsInt(ConfigConstants.SEARCHGUARD_VERIFIED_CREDENTIALS_CACHE_MAX_SIZE, 10000);
+        this.verifiedCredentials = verifiedCredentialsCacheSize > 0
+                ? new VerifiedCredentialsCache(verifiedCredentialsCacheSize, settings.getAsInt(ConfigConstants.SEARCHGUARD_CACHE_TTL_MINUTES, 60))
+                : null;
+    }
+
+    @Override
+    public void onChange(Settings configuration) {
+        store = configuration == null ? null : InternalUsersStore.build(configuration);
     }
 
     @Override
     public boolean exists(User user) {
 
-        final Settings cfg = getConfigSettings();
-        if (cfg == null) {
+        final InternalUsersStore users = getUsers();
+        if (users == null) {
             return false;
         }
         
-        String hashed = cfg.get(user.getName() + ".hash");
+        final String hashed = users.getHash(user.getName());
 
         if (hashed == null) {
-            
-            for(String username:cfg.names()) {
-                String u = cfg.get(username + ".username");
-                if(user.getName().equals(u)) {
-                    hashed = cfg.get(username+ ".hash");
-                    break;
-                }
-            }
-            
-            if(hashed == null) {
-                return false;
-            }
+            return false;
         }
         
-        final List<String> roles = cfg.getAsList(user.getName() + ".roles", Collections.emptyList());
+        final List<String> roles = users.getRoles(user.getName());
         
         if(roles != null) {
             user.addRoles(roles);
@@ -79,13 +84,11 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
         
         //FIX https://github.com/opendistro-for-elasticsearch/security/pull/23
         //Credits to @turettn
-        final Settings customAttributes = cfg.getAsSettings(user.getName() + ".attributes");
+        final Map<String, String> customAttributes = users.getAttributes(user.getName());
         Map<String, String> attributeMap = new HashMap<>();
 
-        if(customAttributes != null) {
-            for(String attributeName: customAttributes.names()) {
-                attributeMap.put("attr.internal."+attributeName, customAttributes.get(attributeName));
-            }
+        for(Map.Entry<String, String> attribute: customAttributes.entrySet()) {
+            attributeMap.put("attr.internal."+attribute.getKey(), attribute.getValue());
         }
 
         user.addAttributes(attributeMap);
@@ -96,27 +99,16 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
     @Override
     public User authenticate(final AuthCredentials credentials) {
         
-        final Settings cfg = getConfigSettings();
-        if (cfg == null) {
+        final InternalUsersStore users = getUsers();
+        if (users == null) {
             throw new ElasticsearchSecurityException("Internal authentication backend not configured. May be Search Guard is not initialized. See http://docs.search-guard.com/v6/sgadmin");
 
         }
 
-        String hashed = cfg.get(credentials.getUsername() + ".hash");
+        final String hashed = users.getHash(credentials.getUsername());
 
         if (hashed == null) {
-            
-            for(String username:cfg.names()) {
-                String u = cfg.get(username + ".username");
-                if(credentials.getUsername().equals(u)) {
-                    hashed = cfg.get(username+ ".hash");
-                    break;
-                }
-            }
-            
-            if(hashed == null) {
-                throw new ElasticsearchSecurityException(credentials.getUsername() + " not found");
-            }
+            throw new ElasticsearchSecurityException(credentials.getUsername() + " not found");
         }
         
         final byte[] password = credentials.getPassword();
@@ -125,6 +117,8 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
             throw new ElasticsearchSecurityException("empty passwords not supported");
         }
 
+        final HashCode verifiedKey = verifiedCredentials == null ? null : verifiedCredentials.key(credentials.getUsername(), hashed, password);
+
         ByteBuffer wrap = ByteBuffer.wrap(password);
         CharBuffer buf = StandardCharsets.UTF_8.decode(wrap);
         char[] array = new char[buf.limit()];
@@ -133,14 +127,13 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
         Arrays.fill(password, (byte)0);
        
         try {
-            if (OpenBSDBCrypt.checkPassword(hashed, array)) {
-                final List<String> roles = cfg.getAsList(credentials.getUsername() + ".roles", Collections.emptyList());
-                final Settings customAttributes = cfg.getAsSettings(credentials.getUsername() + ".attributes");
-
-                if(customAttributes != null) {
-                    for(String attributeName: customAttributes.names()) {
-                        credentials.addAttribute("attr.internal."+attributeName, customAttributes.get(attributeName));
-                    }
+            if (isVerified(verifiedKey, hashed, array)) {
+
+                final List<String> roles = users.getRoles(credentials.getUsername());
+                final Map<String, String> customAttributes = users.getAttributes(credentials.getUsername());
+
+                for(Map.Entry<String, String> attribute: customAttributes.entrySet()) {
+                    credentials.addAttribute("attr.internal."+attribute.getKey(), attribute.getValue());
                 }
 
                 return new User(credentials.getUsername(), roles, credentials);
@@ -154,23 +147,54 @@ public class InternalAuthenticationBackend implements AuthenticationBackend, Aut
         }
     }
 
+    //only a successful BCrypt check (re)starts the expiry of a remembered credential, cache hits do not extend it
+    private boolean isVerified(final HashCode verifiedKey, final String hashed, final char[] password) {
+        if (verifiedKey != null && verifiedCredentials.isVerified(verifiedKey)) {
+            return true;
+        }
+
+        if (!OpenBSDBCrypt.checkPassword(hashed, password)) {
+            return false;
+        }
+
+        if (verifiedKey != null) {
+            verifiedCredentials.verified(verifiedKey);
+        }
+
+        return true;
+    }
+
     @Override
     public String getType() {
         return "internal";
     }
 
-    private Settings getConfigSettings() {
-        return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_INTERNAL_USERS);
+    private InternalUsersStore getUsers() {
+        final Settings cfg = configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_INTERNAL_USERS);
+
+        if (cfg == null) {
+            return null;
+        }
+
+        InternalUsersStore users = store;
+
+        //the change listener normally rebuilds the store, this covers config loaded before subscription
+        if (users == null || !users.isBuiltFrom(cfg)) {
+            users = InternalUsersStore.build(cfg);
+            store = users;
+        }
+
+        return users;
     }
 
     @Override
     public void fillRoles(User user, AuthCredentials credentials) throws ElasticsearchSecurityException {
-        final Settings cfg = getConfigSettings();
-        if (cfg == null) {
+        final InternalUsersStore users = getUsers();
+        if (users == null) {
             throw new ElasticsearchSecurityException("Internal authentication backend not configured. May be Search Guard is not initialized. See http://docs.search-guard.com/v6/sgadmin");
 
         }
-        final List<String> roles = cfg.getAsList(credentials.getUsername() + ".roles", Collections.emptyList());
+        final List<String> roles = users.getRoles(credentials.getUsername());
         if(roles != null && !roles.isEmpty() && user != null) {
             user.addRoles(roles);
         }
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.internal;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.Settings;
+
+/**
+ * Immutable index of the sg_internal_users configuration.
+ * <p>
+ * Looking up a user by name or by its <code>username</code> alias is a hash lookup instead of a scan over all
+ * configured users. The lookup semantics are the same as with the flat settings: the hash is looked up by
+ * <code>&lt;name&gt;.hash</code> first and then by the first entry whose <code>username</code> matches, roles and
+ * attributes are always looked up by the given name.
+ */
+final class InternalUsersStore {
+
+    private final Settings source;
+    private final Map<String, String> hashes;
+    private final Map<String, String> aliasHashes;
+    private final Map<String, List<String>> roles;
+    private final Map<String, Map<String, String>> attributes;
+
+    private InternalUsersStore(final Settings source) {
+        this.source = source;
+
+        final Map<String, String> hashes = new HashMap<>();
+        final Map<String, List<String>> roles = new HashMap<>();
+        final Map<String, Map<String, String>> attributes = new HashMap<>();
+
+        for (String key : source.keySet()) {
+            if (key.endsWith(".hash")) {
+                final String name = key.substring(0, key.length() - ".hash".length());
+                hashes.put(name, source.get(key));
+                roles.put(name, Collections.unmodifiableList(source.getAsList(name + ".roles", Collections.emptyList())));
+            }
+        }
+
+        for (String key : source.keySet()) {
+            for (int i = key.indexOf(".attributes."); i > 0; i = key.indexOf(".attributes.", i + 1)) {
+                final String name = key.substring(0, i);
+
+                if (!hashes.containsKey(name)) {
+                    continue;
+                }
+
+                final String attributeKey = key.substring(i + ".attributes.".length());
+                final int dot = attributeKey.indexOf('.');
+                final Map<String, String> userAttributes = attributes.computeIfAbsent(name, (k) -> new HashMap<>());
+
+                if (dot < 0) {
+                    userAttributes.put(attributeKey, source.get(key));
+                } else {
+                    //nested attributes have no value, like with Settings.getAsSettings(..).get(..)
+                    userAttributes.putIfAbsent(attributeKey.substring(0, dot), null);
+                }
+            }
+        }
+
+        final Map<String, String> aliasHashes = new HashMap<>();
+
+        for (String name : source.names()) {
+            final String username = source.get(name + ".username");
+
+            if (username != null && !aliasHashes.containsKey(username)) {
+                aliasHashes.put(username, source.get(name + ".hash"));
+            }
+        }
+
+        for (Map.Entry<String, Map<String, String>> entry : attributes.entrySet()) {
+            entry.setValue(Collections.unmodifiableMap(entry.getValue()));
+        }
+
+        this.hashes = hashes;
+        this.aliasHashes = aliasHashes;
+        this.roles = roles;
+        this.attributes = attributes;
+    }
+
+    static InternalUsersStore build(final Settings source) {
+        return new InternalUsersStore(source);
+    }
+
+    boolean isBuiltFrom(final Settings settings) {
+        return source == settings;
+    }
+
+    /**
+     * @return the password hash of the user or null if the user does not exist
+     */
+    String getHash(final String username) {
+        final String hash = hashes.get(username);
+        return hash != null ? hash : aliasHashes.get(username);
+    }
+
+    List<String> getRoles(final String username) {
+        final List<String> userRoles = roles.get(username);
+
+        if (userRoles != null) {
+            return userRoles;
+        }
+
+        //only for users which were found by their alias
+        return source.getAsList(username + ".roles", Collections.emptyList());
+    }
+
+    /**
+     * @return the custom attributes of the user without the attr.internal prefix
+     */
+    Map<String, String> getAttributes(final String username) {
+
+        if (hashes.containsKey(username)) {
+            final Map<String, String> userAttributes = attributes.get(username);
+            return userAttributes == null ? Collections.emptyMap() : userAttributes;
+        }
+
+        //only for users which were found by their alias
+        final Settings customAttributes = source.getAsSettings(username + ".attributes");
+        final Map<String, String> userAttributes = new HashMap<>();
+
+        for (String attributeName : customAttributes.names()) {
+            userAttributes.put(attributeName, customAttributes.get(attributeName));
+        }
+
+        return userAttributes;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.internal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Remembers credentials which were already verified against a BCrypt hash.
+ * <p>
+ * Entries are keyed by a HMAC over username, stored password hash and password. The HMAC key is random and never
+ * leaves the node, so neither passwords nor values which could be used for offline guessing are kept in memory.
+ * Because the stored hash is part of the key a password change makes old entries unreachable, so the cache does
+ * not need to be flushed on config reloads.
+ */
+final class VerifiedCredentialsCache {
+
+    private final HashFunction hmac;
+    private final Cache<HashCode, Boolean> cache;
+
+    VerifiedCredentialsCache(final int maxSize, final int ttlInMin) {
+        final byte[] key = new byte[32];
+        new SecureRandom().nextBytes(key);
+        this.hmac = Hashing.hmacSha256(key);
+        this.cache = CacheBuilder.newBuilder().maximumSize(maxSize).expireAfterWrite(ttlInMin, TimeUnit.MINUTES).concurrencyLevel(16).build();
+    }
+
+    HashCode key(final String username, final String hash, final byte[] password) {
+        final byte[] usernameBytes = username.getBytes(StandardCharsets.UTF_8);
+        final byte[] hashBytes = hash.getBytes(StandardCharsets.UTF_8);
+        return hmac.newHasher()
+                .putInt(usernameBytes.length).putBytes(usernameBytes)
+                .putInt(hashBytes.length).putBytes(hashBytes)
+                .putInt(password.length).putBytes(password)
+                .hash();
+    }
+
+    boolean isVerified(final HashCode key) {
+        return cache.getIfPresent(key) != null;
+    }
+
+    void verified(final HashCode key) {
+        cache.put(key, Boolean.TRUE);
+    }
+
+    long size() {
+        return cache.size();
+    }
+}
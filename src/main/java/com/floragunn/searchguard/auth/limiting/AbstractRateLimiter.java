@@ -19,11 +19,13 @@ package com.floragunn.searchguard.auth.limiting;
 
 import java.net.InetAddress;
 import java.nio.file.Path;
+import java.util.function.Consumer;
 
 import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.auth.AuthFailureListener;
 import com.floragunn.searchguard.auth.blocking.ClientBlockRegistry;
+import com.floragunn.searchguard.auth.blocking.CompactClientBlockRegistry;
 import com.floragunn.searchguard.auth.blocking.HeapBasedClientBlockRegistry;
 import com.floragunn.searchguard.user.AuthCredentials;
 import com.floragunn.searchguard.util.ratetracking.RateTracker;
@@ -31,12 +33,20 @@ import com.floragunn.searchguard.util.ratetracking.RateTracker;
 public abstract class AbstractRateLimiter<ClientIdType> implements AuthFailureListener, ClientBlockRegistry<ClientIdType> {
     protected final ClientBlockRegistry<ClientIdType> clientBlockRegistry;
     protected final RateTracker<ClientIdType> rateTracker;
+    private final boolean clusterWide;
+    private volatile Consumer<String> blockPublisher;
 
     public AbstractRateLimiter(Settings settings, Path configPath, Class<ClientIdType> clientIdType) {
-        this.clientBlockRegistry = new HeapBasedClientBlockRegistry<>(settings.getAsInt("block_expiry_seconds", 60 * 10) * 1000,
-                settings.getAsInt("max_blocked_clients", 100_000), clientIdType);
+        //compact: lock free primitive tables for a very large number of clients, see CompactRateTracker
+        final boolean compact = "compact".equalsIgnoreCase(settings.get("implementation", "heap"));
+        final long blockExpiryMs = settings.getAsInt("block_expiry_seconds", 60 * 10) * 1000;
+        final int maxBlockedClients = settings.getAsInt("max_blocked_clients", 100_000);
+
+        this.clientBlockRegistry = compact ? new CompactClientBlockRegistry<>(blockExpiryMs, maxBlockedClients, clientIdType)
+                : new HeapBasedClientBlockRegistry<>(blockExpiryMs, maxBlockedClients, clientIdType);
+        this.clusterWide = settings.getAsBoolean("cluster_wide", false);
         this.rateTracker = RateTracker.create(settings.getAsInt("time_window_seconds", 60 * 60) * 1000, settings.getAsInt("allowed_tries", 10),
-                settings.getAsInt("max_tracked_clients", 100_000));
+                settings.getAsInt("max_tracked_clients", 100_000), compact);
     }
 
     @Override
@@ -51,8 +61,38 @@ public abstract class AbstractRateLimiter<ClientIdType> implements AuthFailureLi
     public void block(ClientIdType clientId) {
         clientBlockRegistry.block(clientId);
         rateTracker.reset(clientId);
+
+        final Consumer<String> blockPublisher = this.blockPublisher;
+
+        if (blockPublisher != null) {
+            blockPublisher.accept(formatClientId(clientId));
+        }
     }
 
+    /**
+     * Blocks a client which was blocked by this listener on another node. The block is not published again.
+     */
+    public void blockFromRemote(String clientId) {
+        final ClientIdType parsedClientId = parseClientId(clientId);
+        clientBlockRegistry.block(parsedClientId);
+        rateTracker.reset(parsedClientId);
+    }
+
+    /**
+     * @return true if blocks of this listener are published to all nodes of the cluster
+     */
+    public boolean isClusterWide() {
+        return clusterWide;
+    }
+
+    public void setBlockPublisher(Consumer<String> blockPublisher) {
+        this.blockPublisher = blockPublisher;
+    }
+
+    protected abstract String formatClientId(ClientIdType clientId);
+
+    protected abstract ClientIdType parseClientId(String clientId);
+
     @Override
     public Class<ClientIdType> getClientIdType() {
         return clientBlockRegistry.getClientIdType();
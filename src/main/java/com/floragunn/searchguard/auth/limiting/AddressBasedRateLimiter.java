@@ -20,6 +20,7 @@ package com.floragunn.searchguard.auth.limiting;
 import java.net.InetAddress;
 import java.nio.file.Path;
 
+import org.elasticsearch.common.network.InetAddresses;
 import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.auth.AuthFailureListener;
@@ -38,4 +39,14 @@ public class AddressBasedRateLimiter extends AbstractRateLimiter<InetAddress> im
             block(remoteAddress);
         }
     }
+
+    @Override
+    protected String formatClientId(InetAddress clientId) {
+        return InetAddresses.toAddrString(clientId);
+    }
+
+    @Override
+    protected InetAddress parseClientId(String clientId) {
+        return InetAddresses.forString(clientId);
+    }
 }
@@ -38,4 +38,14 @@ public class UserNameBasedRateLimiter extends AbstractRateLimiter<String> implem
             block(authCredentials.getUsername());
         }
     }
+
+    @Override
+    protected String formatClientId(String clientId) {
+        return clientId;
+    }
+
+    @Override
+    protected String parseClientId(String clientId) {
+        return clientId;
+    }
 }
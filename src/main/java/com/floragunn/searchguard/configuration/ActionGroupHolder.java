@@ -18,17 +18,31 @@
 package com.floragunn.searchguard.configuration;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.elasticsearch.common.settings.Settings;
 
 import com.floragunn.searchguard.support.ConfigConstants;
 
+/**
+ * Resolves action groups to their permissions.
+ * <p>
+ * The action groups are flattened once per loaded sg_action_groups configuration into an immutable table, so resolving
+ * a group is a single lookup. Recursive group definitions are detected while flattening and logged instead of failing
+ * with a stack overflow.
+ */
 public class ActionGroupHolder {
 
+    protected final Logger log = LogManager.getLogger(this.getClass());
     final ConfigurationRepository configurationRepository;
+    private volatile FlattenedActionGroups flattened;
 
     public ActionGroupHolder(final ConfigurationRepository configurationRepository) {
         this.configurationRepository = configurationRepository;
@@ -42,28 +56,21 @@ public class ActionGroupHolder {
             return Collections.emptySet();
         }
 
-        return resolve(actionGroups, groupname);
+        return getFlattened(actionGroups).getMembers(groupname);
     }
 
-    private Set<String> resolve(final Settings actionGroups, final String entry) {
+    private FlattenedActionGroups getFlattened(final Settings actionGroups) {
+        final FlattenedActionGroups current = flattened;
 
-        final Set<String> ret = new HashSet<String>();
-        // SG5 format, plain array
-        List<String> en = actionGroups.getAsList(entry);
-        if (en.isEmpty()) {
-        	// try SG6 format including readonly and permissions key
-        	en = actionGroups.getAsList(entry +"." + ConfigConstants.CONFIGKEY_ACTION_GROUPS_PERMISSIONS);
-        }
-        for (String string: en) {
-            if (actionGroups.names().contains(string)) {
-                ret.addAll(resolve(actionGroups,string));
-            } else {
-                ret.add(string);
-            }
+        if (current != null && current.source == actionGroups) {
+            return current;
         }
-        return ret;
+
+        final FlattenedActionGroups rebuilt = new FlattenedActionGroups(actionGroups);
+        flattened = rebuilt;
+        return rebuilt;
     }
-    
+
     public Set<String> resolvedActions(final List<String> actions) {
         final Set<String> resolvedActions = new HashSet<String>();
         for (String string: actions) {
@@ -78,7 +85,100 @@ public class ActionGroupHolder {
         return resolvedActions;
     }
 
+    /**
+     * @return the currently loaded sg_action_groups configuration, may be null
+     */
+    public Settings getActionGroupsSettings() {
+        return getSettings();
+    }
+
     private Settings getSettings() {
         return configurationRepository.getConfiguration(ConfigConstants.CONFIGNAME_ACTION_GROUPS);
     }
+
+    //group name -> all permissions of the group, including those of nested groups
+    private final class FlattenedActionGroups {
+
+        private final Settings source;
+        private final Set<String> groupNames;
+        private final Map<String, Set<String>> members;
+
+        private FlattenedActionGroups(final Settings source) {
+            this.source = source;
+            this.groupNames = source.names();
+
+            final Map<String, Set<String>> members = new HashMap<>(groupNames.size());
+
+            for (String groupName : groupNames) {
+                flatten(groupName, members, new LinkedHashSet<String>(), new HashSet<String>());
+            }
+
+            this.members = members;
+        }
+
+        private Set<String> getMembers(final String groupName) {
+            final Set<String> groupMembers = members.get(groupName);
+
+            if (groupMembers != null) {
+                return groupMembers;
+            }
+
+            //not a top level group, resolve without memoization like before
+            return flatten(groupName, new HashMap<String, Set<String>>(), new LinkedHashSet<String>(), new HashSet<String>());
+        }
+
+        /**
+         * @param cycleTargets the groups on the path at which a recursion was cut. A group whose members were
+         *        computed while a recursion to one of its ancestors was cut misses the members of that ancestor
+         *        and must not be memoized.
+         */
+        private Set<String> flatten(final String groupName, final Map<String, Set<String>> flattened, final Set<String> path,
+                final Set<String> cycleTargets) {
+            final Set<String> done = flattened.get(groupName);
+
+            if (done != null) {
+                return done;
+            }
+
+            if (!path.add(groupName)) {
+                log.warn("Action group {} is defined recursively ({} -> {}), ignore the recursion", groupName, path, groupName);
+                cycleTargets.add(groupName);
+                return Collections.emptySet();
+            }
+
+            final Set<String> ret = new HashSet<String>();
+
+            for (String string : getDefinition(groupName)) {
+                if (groupNames.contains(string)) {
+                    ret.addAll(flatten(string, flattened, path, cycleTargets));
+                } else {
+                    ret.add(string);
+                }
+            }
+
+            path.remove(groupName);
+            //a recursion back to this group itself does not miss any members
+            cycleTargets.remove(groupName);
+
+            final Set<String> result = Collections.unmodifiableSet(ret);
+
+            if (cycleTargets.isEmpty()) {
+                flattened.put(groupName, result);
+            }
+
+            return result;
+        }
+
+        private List<String> getDefinition(final String groupName) {
+            // SG5 format, plain array
+            final List<String> en = source.getAsList(groupName);
+
+            if (en.isEmpty()) {
+                // try SG6 format including readonly and permissions key
+                return source.getAsList(groupName + "." + ConfigConstants.CONFIGKEY_ACTION_GROUPS_PERMISSIONS);
+            }
+
+            return en;
+        }
+    }
 }
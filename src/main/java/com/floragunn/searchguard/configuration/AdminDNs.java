@@ -32,6 +32,8 @@ import org.elasticsearch.common.settings.Settings;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ListMultimap;
 
@@ -42,6 +44,8 @@ public class AdminDNs {
     private final Set<String> adminUsernames = new HashSet<String>();
     private final ListMultimap<LdapName, String> allowedImpersonations = ArrayListMultimap.<LdapName, String> create();
     private final ListMultimap<String, String> allowedRestImpersonations = ArrayListMultimap.<String, String> create();
+    //raw principal string -> is admin, admin DNs never change during the lifetime of a node
+    private final Cache<String, Boolean> adminDnVerdicts = CacheBuilder.newBuilder().maximumSize(1000).concurrencyLevel(16).build();
     private boolean injectUserEnabled;
     private boolean injectAdminUserEnabled;
     
@@ -107,12 +111,28 @@ public class AdminDNs {
     public boolean isAdminDN(String dn) {
         
         if(dn == null) return false;
-                
+
+        if(adminDn.isEmpty()) return false;
+
+        //every RDN is type=value, so names without '=' (like most usernames) can never be a DN
+        if(!dn.isEmpty() && dn.indexOf('=') < 0) return false;
+
+        final Boolean cached = adminDnVerdicts.getIfPresent(dn);
+
+        if(cached != null) {
+            return cached.booleanValue();
+        }
+
+        boolean isAdmin;
+
         try {
-            return isAdminDN(new LdapName(dn));
+            isAdmin = isAdminDN(new LdapName(dn));
         } catch (InvalidNameException e) {
-           return false;
+            isAdmin = false;
         }
+
+        adminDnVerdicts.put(dn, isAdmin);
+        return isAdmin;
     }
 
     private boolean isAdminDN(LdapName dn) {
@@ -0,0 +1,364 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.Matches;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.ScorerSupplier;
+import org.apache.lucene.search.Weight;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.lucene.ShardCoreKeyMap;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.query.QueryCache;
+import org.elasticsearch.indices.IndicesQueryCache;
+
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderHelper;
+import com.floragunn.searchguard.support.HeaderObjectCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSortedSet;
+
+/**
+ * Node wide query cache for requests which are subject to field level security or field masking.
+ * <p>
+ * Results of such requests must not be shared with users who have other restrictions, so they are kept apart
+ * from the node query cache. Cached entries are keyed by the query and a canonical fingerprint (partition)
+ * of the FLS and masked fields which apply to the index, users with the same restrictions share cached results.
+ * Requests without restrictions on an index still use the node query cache.
+ * <p>
+ * Like the node query cache the segments are tracked per shard, so clearing the cache of an index does not affect other indices.
+ */
+public class FlsQueryCache {
+
+    //marks requests which are not restricted on an index
+    private static final Object UNRESTRICTED = new Object();
+    private static final int MAX_PARTITION_STATS = 1000;
+
+    private final LRUQueryCache cache;
+    private final ShardCoreKeyMap shardKeyMap = new ShardCoreKeyMap();
+    private final HeaderObjectCache headerObjectCache;
+    private final Cache<Partition, PartitionStats> partitionStats = CacheBuilder.newBuilder().maximumSize(MAX_PARTITION_STATS).build();
+
+    public FlsQueryCache(final int maxSize, final long maxRamBytesUsed, final HeaderObjectCache headerObjectCache) {
+        this.headerObjectCache = headerObjectCache;
+        this.cache = new LRUQueryCache(maxSize, maxRamBytesUsed) {
+
+            @Override
+            protected void onHit(Object readerCoreKey, Query query) {
+                super.onHit(readerCoreKey, query);
+                stats(query).hits.increment();
+            }
+
+            @Override
+            protected void onMiss(Object readerCoreKey, Query query) {
+                super.onMiss(readerCoreKey, query);
+                stats(query).misses.increment();
+            }
+        };
+    }
+
+    /**
+     * @return the query cache for the given index which dispatches between the node query cache and this cache
+     */
+    public QueryCache forIndex(final IndexSettings indexSettings, final IndicesQueryCache nodeCache, final ThreadContext threadContext) {
+        return new IndexQueryCache(indexSettings.getIndex(), nodeCache, threadContext);
+    }
+
+    public void toXContent(final XContentBuilder builder) throws IOException {
+        builder.startObject("fls_query_cache");
+        builder.field("size", cache.getCacheSize());
+        builder.field("memory_size_in_bytes", cache.ramBytesUsed());
+        builder.field("hits", cache.getHitCount());
+        builder.field("misses", cache.getMissCount());
+        //partitions are identified by their hash only, the health endpoint must not reveal field names
+        builder.startArray("partitions");
+        for (Map.Entry<Partition, PartitionStats> entry : partitionStats.asMap().entrySet()) {
+            builder.startObject();
+            builder.field("id", Integer.toHexString(entry.getKey().hashCode()));
+            builder.field("hits", entry.getValue().hits.sum());
+            builder.field("misses", entry.getValue().misses.sum());
+            builder.endObject();
+        }
+        builder.endArray();
+        builder.endObject();
+    }
+
+    private PartitionStats stats(final Query query) {
+        final Partition partition = query instanceof PartitionedQuery ? ((PartitionedQuery) query).partition : Partition.NONE;
+        try {
+            return partitionStats.get(partition, PartitionStats::new);
+        } catch (ExecutionException e) {
+            throw new ElasticsearchException(e);
+        }
+    }
+
+    private class IndexQueryCache implements QueryCache {
+
+        private final Index index;
+        private final IndicesQueryCache nodeCache;
+        private final ThreadContext threadContext;
+        //keyed by the serialized FLS and masked fields headers
+        private final Cache<Tuple<String, String>, Object> partitions = CacheBuilder.newBuilder().maximumSize(1000).build();
+
+        private IndexQueryCache(final Index index, final IndicesQueryCache nodeCache, final ThreadContext threadContext) {
+            this.index = index;
+            this.nodeCache = nodeCache;
+            this.threadContext = threadContext;
+        }
+
+        @Override
+        public Index index() {
+            return index;
+        }
+
+        @Override
+        public void close() throws ElasticsearchException {
+            //entries of closed segments are evicted by the cache itself
+            nodeCache.clearIndex(index.getName());
+        }
+
+        @Override
+        public void clear(String reason) {
+            nodeCache.clearIndex(index.getName());
+
+            for (Object coreKey : shardKeyMap.getCoreKeysForIndex(index.getName())) {
+                cache.clearCoreCacheKey(coreKey);
+            }
+        }
+
+        @Override
+        public Weight doCache(Weight weight, QueryCachingPolicy policy) {
+            final Object partition = partition();
+
+            if (partition == UNRESTRICTED) {
+                return nodeCache.doCache(weight, policy);
+            }
+
+            final Weight cached = cache.doCache(new DelegatingWeight(new PartitionedQuery(weight.getQuery(), (Partition) partition), weight),
+                    new PartitionedCachingPolicy(policy));
+            //callers see the original query
+            return new ShardTrackingWeight(weight.getQuery(), cached);
+        }
+
+        private Object partition() {
+            final String flsHeader = HeaderHelper.getSafeFromHeader(threadContext, ConfigConstants.SG_FLS_FIELDS_HEADER);
+            final String maskedFieldsHeader = HeaderHelper.getSafeFromHeader(threadContext, ConfigConstants.SG_MASKED_FIELD_HEADER);
+
+            if (flsHeader == null && maskedFieldsHeader == null) {
+                return UNRESTRICTED;
+            }
+
+            try {
+                return partitions.get(new Tuple<>(flsHeader, maskedFieldsHeader),
+                        () -> Partition.of(fieldsFor(flsHeader), fieldsFor(maskedFieldsHeader)));
+            } catch (ExecutionException e) {
+                throw new ElasticsearchException(e);
+            }
+        }
+
+        private Set<String> fieldsFor(final String header) {
+            return headerObjectCache.getIndexRestrictionMap(header).get(index.getName());
+        }
+    }
+
+    //canonical FLS and masked fields of an index
+    private static final class Partition {
+        private static final Partition NONE = new Partition(ImmutableSortedSet.of(), ImmutableSortedSet.of());
+
+        private final SortedSet<String> fls;
+        private final SortedSet<String> maskedFields;
+        private final int hashCode;
+
+        private Partition(SortedSet<String> fls, SortedSet<String> maskedFields) {
+            this.fls = fls;
+            this.maskedFields = maskedFields;
+            this.hashCode = Objects.hash(fls, maskedFields);
+        }
+
+        private static Object of(Set<String> fls, Set<String> maskedFields) {
+            if (fls == null && maskedFields == null) {
+                return UNRESTRICTED;
+            }
+
+            return new Partition(ImmutableSortedSet.copyOf(fls == null ? Collections.emptySet() : fls),
+                    ImmutableSortedSet.copyOf(maskedFields == null ? Collections.emptySet() : maskedFields));
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            Partition other = (Partition) obj;
+            return hashCode == other.hashCode && fls.equals(other.fls) && maskedFields.equals(other.maskedFields);
+        }
+    }
+
+    private static final class PartitionStats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+    }
+
+    //cache key, never executed
+    private static final class PartitionedQuery extends Query {
+        private final Query query;
+        private final Partition partition;
+
+        private PartitionedQuery(Query query, Partition partition) {
+            this.query = query;
+            this.partition = partition;
+        }
+
+        @Override
+        public String toString(String field) {
+            return query.toString(field);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return sameClassAs(obj) && query.equals(((PartitionedQuery) obj).query) && partition.equals(((PartitionedQuery) obj).partition);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * classHash() + query.hashCode()) + partition.hashCode();
+        }
+    }
+
+    //the caching policy tracks the usage of the original queries
+    private static final class PartitionedCachingPolicy implements QueryCachingPolicy {
+        private final QueryCachingPolicy in;
+
+        private PartitionedCachingPolicy(QueryCachingPolicy in) {
+            this.in = in;
+        }
+
+        @Override
+        public void onUse(Query query) {
+            in.onUse(unwrap(query));
+        }
+
+        @Override
+        public boolean shouldCache(Query query) throws IOException {
+            return in.shouldCache(unwrap(query));
+        }
+
+        private static Query unwrap(Query query) {
+            return query instanceof PartitionedQuery ? ((PartitionedQuery) query).query : query;
+        }
+    }
+
+    //registers the segments of which results are cached, like the node query cache does
+    private final class ShardTrackingWeight extends DelegatingWeight {
+
+        private ShardTrackingWeight(Query query, Weight in) {
+            super(query, in);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) throws IOException {
+            shardKeyMap.add(context.reader());
+            return super.scorer(context);
+        }
+
+        @Override
+        public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+            shardKeyMap.add(context.reader());
+            return super.scorerSupplier(context);
+        }
+
+        @Override
+        public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+            shardKeyMap.add(context.reader());
+            return super.bulkScorer(context);
+        }
+    }
+
+    private static class DelegatingWeight extends Weight {
+        private final Weight in;
+
+        private DelegatingWeight(Query query, Weight in) {
+            super(query);
+            this.in = in;
+        }
+
+        @Override
+        public void extractTerms(Set<Term> terms) {
+            in.extractTerms(terms);
+        }
+
+        @Override
+        public Matches matches(LeafReaderContext context, int doc) throws IOException {
+            return in.matches(context, doc);
+        }
+
+        @Override
+        public Explanation explain(LeafReaderContext context, int doc) throws IOException {
+            return in.explain(context, doc);
+        }
+
+        @Override
+        public Scorer scorer(LeafReaderContext context) throws IOException {
+            return in.scorer(context);
+        }
+
+        @Override
+        public ScorerSupplier scorerSupplier(LeafReaderContext context) throws IOException {
+            return in.scorerSupplier(context);
+        }
+
+        @Override
+        public BulkScorer bulkScorer(LeafReaderContext context) throws IOException {
+            return in.bulkScorer(context);
+        }
+
+        @Override
+        public boolean isCacheable(LeafReaderContext ctx) {
+            return in.isCacheable(ctx);
+        }
+    }
+}
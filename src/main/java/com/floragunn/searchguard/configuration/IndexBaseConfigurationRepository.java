@@ -299,6 +299,13 @@ public class IndexBaseConfigurationRepository implements ConfigurationRepository
         return putSettingsToCache(configurationType, result);
     }
 
+    /**
+     * @return the configuration of the given type as of the last load or null if it was not loaded yet, never loads the configuration
+     */
+    public Settings getLoadedConfiguration(String configurationType) {
+        return typeToConfig.get(configurationType);
+    }
+
     private Settings putSettingsToCache(String configurationType, Settings result) {
         if (result != null) {
             typeToConfig.putIfAbsent(configurationType, result);
@@ -44,6 +44,7 @@ import org.elasticsearch.action.support.ActionFilter;
 import org.elasticsearch.action.support.ActionFilterChain;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
 import org.elasticsearch.index.reindex.DeleteByQueryRequest;
@@ -62,6 +63,7 @@ import com.floragunn.searchguard.configuration.CompatConfig;
 import com.floragunn.searchguard.configuration.DlsFlsRequestValve;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluator;
 import com.floragunn.searchguard.privileges.PrivilegesEvaluatorResponse;
+import com.floragunn.searchguard.resolver.IndexResolverReplacer;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
@@ -80,10 +82,11 @@ public class SearchGuardFilter implements ActionFilter {
     private final ClusterService cs;
     private final ComplianceConfig complianceConfig;
     private final CompatConfig compatConfig;
+    private final IndexResolverReplacer irr;
 
     public SearchGuardFilter(final PrivilegesEvaluator evalp, final AdminDNs adminDns,
             DlsFlsRequestValve dlsFlsValve, AuditLog auditLog, ThreadPool threadPool, ClusterService cs,
-            ComplianceConfig complianceConfig, final CompatConfig compatConfig) {
+            ComplianceConfig complianceConfig, final CompatConfig compatConfig, final IndexResolverReplacer irr) {
         this.evalp = evalp;
         this.adminDns = adminDns;
         this.dlsFlsValve = dlsFlsValve;
@@ -92,6 +95,7 @@ public class SearchGuardFilter implements ActionFilter {
         this.cs = cs;
         this.complianceConfig = complianceConfig;
         this.compatConfig = compatConfig;
+        this.irr = irr;
     }
 
     @Override
@@ -102,9 +106,13 @@ public class SearchGuardFilter implements ActionFilter {
     @Override
     public <Request extends ActionRequest, Response extends ActionResponse> void apply(Task task, final String action, Request request,
             ActionListener<Response> listener, ActionFilterChain<Request, Response> chain) {
-        try (StoredContext ctx = threadContext.newStoredContext(true)){
+        //the resolutions of the request are memoized while it is evaluated here, but not once it is passed on
+        try (StoredContext ctx = threadContext.newStoredContext(true); Releasable memo = irr.memoizeResolved()) {
             org.apache.logging.log4j.ThreadContext.clearAll();
-            apply0(task, action, request, listener, chain);
+            apply0(task, action, request, listener, (t, a, r, l) -> {
+                memo.close();
+                chain.proceed(t, a, r, l);
+            });
         }
     }
     
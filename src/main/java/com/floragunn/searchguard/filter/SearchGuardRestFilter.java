@@ -17,6 +17,7 @@
 
 package com.floragunn.searchguard.filter;
 
+import java.io.IOException;
 import java.nio.file.Path;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
@@ -26,6 +27,7 @@ import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.client.node.NodeClient;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
@@ -57,6 +59,8 @@ public class SearchGuardRestFilter {
     private final Settings settings;
     private final Path configPath;
     private final CompatConfig compatConfig;
+    private final ThreadPool threadPool;
+    private final boolean asyncAuthentication;
 
     public SearchGuardRestFilter(final BackendRegistry registry, final AuditLog auditLog,
             final ThreadPool threadPool, final PrincipalExtractor principalExtractor,
@@ -69,6 +73,8 @@ public class SearchGuardRestFilter {
         this.settings = settings;
         this.configPath = configPath;
         this.compatConfig = compatConfig;
+        this.threadPool = threadPool;
+        this.asyncAuthentication = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, false);
     }
     
     public RestHandler wrap(RestHandler original) {
@@ -77,6 +83,31 @@ public class SearchGuardRestFilter {
             @Override
             public void handleRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
                 org.apache.logging.log4j.ThreadContext.clearAll();
+
+                if(asyncAuthentication && requiresAuthentication(request)) {
+                    //backend calls must not block the network thread, continue on the auth thread pool
+                    threadPool.executor(ConfigConstants.SG_AUTH_THREAD_POOL).execute(threadContext.preserveContext(new AbstractRunnable() {
+
+                        @Override
+                        protected void doRun() throws Exception {
+                            org.apache.logging.log4j.ThreadContext.clearAll();
+                            if(!checkAndAuthenticateRequest(request, channel, client)) {
+                                original.handleRequest(request, channel, client);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(Exception e) {
+                            try {
+                                channel.sendResponse(new BytesRestResponse(channel, e));
+                            } catch (IOException e1) {
+                                log.error("Unable to send failure response", e1);
+                            }
+                        }
+                    }));
+                    return;
+                }
+
                 if(!checkAndAuthenticateRequest(request, channel, client)) {
                     original.handleRequest(request, channel, client);
                 }
@@ -84,6 +115,13 @@ public class SearchGuardRestFilter {
         };
     }
 
+    private boolean requiresAuthentication(RestRequest request) {
+        return compatConfig.restAuthEnabled()
+                && request.method() != Method.OPTIONS 
+                && !"/_searchguard/license".equals(request.path())
+                && !"/_searchguard/health".equals(request.path());
+    }
+
     private boolean checkAndAuthenticateRequest(RestRequest request, RestChannel channel, NodeClient client) throws Exception {
 
         threadContext.putTransient(ConfigConstants.SG_ORIGIN, Origin.REST.toString());
@@ -124,13 +162,7 @@ public class SearchGuardRestFilter {
             return true;
         }
         
-        if(!compatConfig.restAuthEnabled()) {
-            return false;
-        }
-
-        if(request.method() != Method.OPTIONS 
-                && !"/_searchguard/license".equals(request.path())
-                && !"/_searchguard/health".equals(request.path())) {
+        if(requiresAuthentication(request)) {
             if (!registry.authenticate(request, channel, threadContext)) {
                 // another roundtrip
                 org.apache.logging.log4j.ThreadContext.remove("user");
@@ -19,14 +19,18 @@ package com.floragunn.searchguard.privileges;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ElasticsearchSecurityException;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsRequest;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
@@ -38,42 +42,68 @@ import org.elasticsearch.threadpool.ThreadPool;
 
 import com.floragunn.searchguard.SearchGuardPlugin;
 import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
+import com.floragunn.searchguard.sgconf.ConfigModel.SgRole;
 import com.floragunn.searchguard.sgconf.ConfigModel.SgRoles;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 
 public class DlsFlsEvaluator {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
 
     private final ThreadPool threadPool;
+    //the keys of the dls/fls/masked fields maps are index patterns from sg_roles or concrete index names
+    private final LoadingCache<String, WildcardMatcher.Matcher> patternMatchers = CacheBuilder.newBuilder().maximumSize(10000)
+            .build(new CacheLoader<String, WildcardMatcher.Matcher>() {
+                @Override
+                public WildcardMatcher.Matcher load(String pattern) {
+                    return WildcardMatcher.compile(pattern);
+                }
+            });
+
+    //dls/fls/masked fields maps per set of sg roles, user properties (if referenced) and cluster metadata version
+    private final Cache<Key, DlsFlsMaps> dlsFlsCache;
 
-    public DlsFlsEvaluator(Settings settings, ThreadPool threadPool) {
+    private final boolean compactHeaderCodecEnabled;
+    private final HeaderObjectCache headerObjectCache;
+
+    public DlsFlsEvaluator(Settings settings, ThreadPool threadPool, HeaderObjectCache headerObjectCache) {
         this.threadPool = threadPool;
+        this.headerObjectCache = headerObjectCache;
+        this.compactHeaderCodecEnabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_COMPACT_HEADER_CODEC_ENABLED, true);
+        final int cacheSize = settings.getAsInt(ConfigConstants.SEARCHGUARD_DLS_FLS_CACHE_MAX_SIZE, 1000);
+        this.dlsFlsCache = cacheSize > 0 ? CacheBuilder.newBuilder().maximumSize(cacheSize).concurrencyLevel(16).build() : null;
     }
 
     public PrivilegesEvaluatorResponse evaluate(final ActionRequest request, final ClusterService clusterService, final IndexNameExpressionResolver resolver, final Resolved requestedResolved, final User user,
             final SgRoles sgRoles, final PrivilegesEvaluatorResponse presponse) {
 
         ThreadContext threadContext = threadPool.getThreadContext();
+        final DlsFlsMaps dlsFlsMaps = getDlsFlsMaps(clusterService, resolver, user, sgRoles);
 
         // maskedFields
-        final Map<String, Set<String>> maskedFieldsMap = sgRoles.getMaskedFields(user, resolver, clusterService);
+        final HeaderMap maskedFieldsHeaderMap = dlsFlsMaps.maskedFields;
+        final Map<String, Set<String>> maskedFieldsMap = maskedFieldsHeaderMap.map;
 
        
         if (maskedFieldsMap != null && !maskedFieldsMap.isEmpty()) {
             
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.SG_MASKED_FIELD_HEADER, Base64Helper.serializeObject((Serializable) maskedFieldsMap));
+                threadContext.addResponseHeader(ConfigConstants.SG_MASKED_FIELD_HEADER, maskedFieldsHeaderMap.serialized(false));
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for masked fields info: {}", maskedFieldsMap);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.SG_MASKED_FIELD_HEADER) != null) {
-                    if (!maskedFieldsMap.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.SG_MASKED_FIELD_HEADER)))) {
+                    if (!maskedFieldsHeaderMap.matches(threadContext.getHeader(ConfigConstants.SG_MASKED_FIELD_HEADER), headerObjectCache)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.SG_MASKED_FIELD_HEADER + " does not match (SG 901D)");
                     } else {
                         if (log.isDebugEnabled()) {
@@ -81,75 +111,62 @@ public class DlsFlsEvaluator {
                         }
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.SG_MASKED_FIELD_HEADER, Base64Helper.serializeObject((Serializable) maskedFieldsMap));
+                    threadContext.putHeader(ConfigConstants.SG_MASKED_FIELD_HEADER, maskedFieldsHeaderMap.serialized(compactHeaderCodecEnabled));
                     if (log.isDebugEnabled()) {
                         log.debug("attach masked fields info: {}", maskedFieldsMap);
                     }
                 }
             }
         
-            presponse.maskedFields = new HashMap<>(maskedFieldsMap);
+            presponse.maskedFields = copy(maskedFieldsMap);
             
-            if (!requestedResolved.getAllIndices().isEmpty()) {
-                for (Iterator<Entry<String, Set<String>>> it = presponse.maskedFields.entrySet().iterator(); it.hasNext();) {
-                    Entry<String, Set<String>> entry = it.next();
-                    if (!WildcardMatcher.matchAny(entry.getKey(), requestedResolved.getAllIndices(), false)) {
-                        it.remove();
-                    }
-                }
-            }     
+            retainRequested(presponse.maskedFields, requestedResolved);     
         }
 
         
 
         // attach dls/fls map if not already done
-        final Tuple<Map<String, Set<String>>, Map<String, Set<String>>> dlsFls = sgRoles.getDlsFls(user, resolver, clusterService);
-        final Map<String, Set<String>> dlsQueries = dlsFls.v1();
-        final Map<String, Set<String>> flsFields = dlsFls.v2();
+        final HeaderMap dlsQueriesHeaderMap = dlsFlsMaps.dlsQueries;
+        final HeaderMap flsFieldsHeaderMap = dlsFlsMaps.flsFields;
+        final Map<String, Set<String>> dlsQueries = dlsQueriesHeaderMap.map;
+        final Map<String, Set<String>> flsFields = flsFieldsHeaderMap.map;
 
         if (!dlsQueries.isEmpty()) {
 
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.SG_DLS_QUERY_HEADER, Base64Helper.serializeObject((Serializable) dlsQueries));
+                threadContext.addResponseHeader(ConfigConstants.SG_DLS_QUERY_HEADER, dlsQueriesHeaderMap.serialized(false));
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for DLS info: {}", dlsQueries);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.SG_DLS_QUERY_HEADER) != null) {
-                    if (!dlsQueries.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.SG_DLS_QUERY_HEADER)))) {
+                    if (!dlsQueriesHeaderMap.matches(threadContext.getHeader(ConfigConstants.SG_DLS_QUERY_HEADER), headerObjectCache)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.SG_DLS_QUERY_HEADER + " does not match (SG 900D)");
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.SG_DLS_QUERY_HEADER, Base64Helper.serializeObject((Serializable) dlsQueries));
+                    threadContext.putHeader(ConfigConstants.SG_DLS_QUERY_HEADER, dlsQueriesHeaderMap.serialized(compactHeaderCodecEnabled));
                     if (log.isDebugEnabled()) {
                         log.debug("attach DLS info: {}", dlsQueries);
                     }
                 }
             }
 
-            presponse.queries = new HashMap<>(dlsQueries);
+            presponse.queries = copy(dlsQueries);
 
-            if (!requestedResolved.getAllIndices().isEmpty()) {
-                for (Iterator<Entry<String, Set<String>>> it = presponse.queries.entrySet().iterator(); it.hasNext();) {
-                    Entry<String, Set<String>> entry = it.next();
-                    if (!WildcardMatcher.matchAny(entry.getKey(), requestedResolved.getAllIndices(), false)) {
-                        it.remove();
-                    }
-                }
-            }
+            retainRequested(presponse.queries, requestedResolved);
 
         }
 
         if (!flsFields.isEmpty()) {
 
             if(request instanceof ClusterSearchShardsRequest && HeaderHelper.isTrustedClusterRequest(threadContext)) {
-                threadContext.addResponseHeader(ConfigConstants.SG_FLS_FIELDS_HEADER, Base64Helper.serializeObject((Serializable) flsFields));
+                threadContext.addResponseHeader(ConfigConstants.SG_FLS_FIELDS_HEADER, flsFieldsHeaderMap.serialized(false));
                 if (log.isDebugEnabled()) {
                     log.debug("added response header for FLS info: {}", flsFields);
                 }
             } else {
                 if (threadContext.getHeader(ConfigConstants.SG_FLS_FIELDS_HEADER) != null) {
-                    if (!flsFields.equals(Base64Helper.deserializeObject(threadContext.getHeader(ConfigConstants.SG_FLS_FIELDS_HEADER)))) {
+                    if (!flsFieldsHeaderMap.matches(threadContext.getHeader(ConfigConstants.SG_FLS_FIELDS_HEADER), headerObjectCache)) {
                         throw new ElasticsearchSecurityException(ConfigConstants.SG_FLS_FIELDS_HEADER + " does not match (SG 901D)");
                     } else {
                         if (log.isDebugEnabled()) {
@@ -157,23 +174,16 @@ public class DlsFlsEvaluator {
                         }
                     }
                 } else {
-                    threadContext.putHeader(ConfigConstants.SG_FLS_FIELDS_HEADER, Base64Helper.serializeObject((Serializable) flsFields));
+                    threadContext.putHeader(ConfigConstants.SG_FLS_FIELDS_HEADER, flsFieldsHeaderMap.serialized(compactHeaderCodecEnabled));
                     if (log.isDebugEnabled()) {
                         log.debug("attach FLS info: {}", flsFields);
                     }
                 }
             }
             
-            presponse.allowedFlsFields = new HashMap<>(flsFields);
+            presponse.allowedFlsFields = copy(flsFields);
 
-            if (!requestedResolved.getAllIndices().isEmpty()) {
-                for (Iterator<Entry<String, Set<String>>> it = presponse.allowedFlsFields.entrySet().iterator(); it.hasNext();) {
-                    Entry<String, Set<String>> entry = it.next();
-                    if (!WildcardMatcher.matchAny(entry.getKey(), requestedResolved.getAllIndices(), false)) {
-                        it.remove();
-                    }
-                }
-            }
+            retainRequested(presponse.allowedFlsFields, requestedResolved);
         }
 
         /*if (requestedResolved == Resolved._EMPTY) {
@@ -183,4 +193,127 @@ public class DlsFlsEvaluator {
         
         return presponse;
     }
+
+    private DlsFlsMaps getDlsFlsMaps(final ClusterService clusterService, final IndexNameExpressionResolver resolver, final User user,
+            final SgRoles sgRoles) {
+
+        if (dlsFlsCache == null) {
+            return buildDlsFlsMaps(clusterService, resolver, user, sgRoles);
+        }
+
+        final Key key = new Key(sgRoles.getRoles(), sgRoles.hasUserDependentDlsFls() ? PrivilegesDecisionCache.userFingerprint(user) : null,
+                clusterService.state().metaData().version());
+
+        try {
+            return dlsFlsCache.get(key, () -> buildDlsFlsMaps(clusterService, resolver, user, sgRoles));
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    private static DlsFlsMaps buildDlsFlsMaps(final ClusterService clusterService, final IndexNameExpressionResolver resolver, final User user,
+            final SgRoles sgRoles) {
+        final Map<String, Set<String>> maskedFields = sgRoles.getMaskedFields(user, resolver, clusterService);
+        final Tuple<Map<String, Set<String>>, Map<String, Set<String>>> dlsFls = sgRoles.getDlsFls(user, resolver, clusterService);
+        return new DlsFlsMaps(new HeaderMap(maskedFields), new HeaderMap(dlsFls.v1()), new HeaderMap(dlsFls.v2()));
+    }
+
+    //the cached maps are shared, so the response gets its own copy
+    private static Map<String, Set<String>> copy(final Map<String, Set<String>> map) {
+        final Map<String, Set<String>> copy = new HashMap<>(map.size());
+        for (Entry<String, Set<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    //remove all entries whose index pattern does not match any of the requested indices
+    private void retainRequested(final Map<String, Set<String>> map, final Resolved requestedResolved) {
+        if (requestedResolved.getAllIndices().isEmpty()) {
+            return;
+        }
+
+        for (Iterator<Entry<String, Set<String>>> it = map.entrySet().iterator(); it.hasNext();) {
+            Entry<String, Set<String>> entry = it.next();
+            if (!patternMatchers.getUnchecked(entry.getKey()).matchAny(requestedResolved.getAllIndices())) {
+                it.remove();
+            }
+        }
+    }
+
+    private static final class DlsFlsMaps {
+        private final HeaderMap maskedFields;
+        private final HeaderMap dlsQueries;
+        private final HeaderMap flsFields;
+
+        private DlsFlsMaps(HeaderMap maskedFields, HeaderMap dlsQueries, HeaderMap flsFields) {
+            this.maskedFields = maskedFields;
+            this.dlsQueries = dlsQueries;
+            this.flsFields = flsFields;
+        }
+    }
+
+    //a dls/fls/masked fields map together with its serialized header values, the map must not be modified
+    private static final class HeaderMap {
+        private final Map<String, Set<String>> map;
+        private volatile String legacy;
+        private volatile String compact;
+
+        private HeaderMap(Map<String, Set<String>> map) {
+            this.map = map;
+        }
+
+        private String serialized(final boolean compactCodec) {
+            if (compactCodec) {
+                String value = compact;
+                if (value == null) {
+                    compact = value = Base64Helper.serializeObject((Serializable) map, true);
+                }
+                return value;
+            } else {
+                String value = legacy;
+                if (value == null) {
+                    legacy = value = Base64Helper.serializeObject((Serializable) map);
+                }
+                return value;
+            }
+        }
+
+        //compares the serialized values first so that only headers from other nodes need to be deserialized
+        private boolean matches(final String header, final HeaderObjectCache headerObjectCache) {
+            return header.equals(compact) || header.equals(legacy) || headerObjectCache.matches(map, header);
+        }
+    }
+
+    private static final class Key {
+        private final Set<SgRole> roles;
+        private final Object userFingerprint;
+        private final long metaDataVersion;
+        private final int hashCode;
+
+        private Key(Set<SgRole> roles, Object userFingerprint, long metaDataVersion) {
+            this.roles = roles;
+            this.userFingerprint = userFingerprint;
+            this.metaDataVersion = metaDataVersion;
+            this.hashCode = Objects.hash(roles, userFingerprint, metaDataVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && metaDataVersion == other.metaDataVersion && roles.equals(other.roles)
+                    && Objects.equals(userFingerprint, other.userFingerprint);
+        }
+    }
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.privileges;
+
+import java.net.InetAddress;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Reverse DNS lookups for the ip-hostname-lookup hosts resolver mode which never block the calling thread.
+ * <p>
+ * Resolved host names are cached for a fixed time. On a miss the lookup is done on the generic thread pool
+ * and null is returned, so until the lookup has finished only the IP address and host string of the caller
+ * are considered for role mapping.
+ */
+final class HostNameResolver {
+
+    private static final int TTL_MINUTES = 5;
+    private static final int MAX_SIZE = 10000;
+
+    protected final Logger log = LogManager.getLogger(this.getClass());
+    private final ThreadPool threadPool;
+    private final Cache<InetAddress, String> hostNames = CacheBuilder.newBuilder().maximumSize(MAX_SIZE)
+            .expireAfterWrite(TTL_MINUTES, TimeUnit.MINUTES).concurrencyLevel(16).build();
+    private final Set<InetAddress> pending = ConcurrentHashMap.newKeySet();
+
+    HostNameResolver(final ThreadPool threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    /**
+     * @return the cached host name of the address or null if it was not resolved yet
+     */
+    String getHostName(final InetAddress address) {
+        if (address == null) {
+            return null;
+        }
+
+        final String hostName = hostNames.getIfPresent(address);
+
+        if (hostName == null && pending.add(address)) {
+            resolve(address);
+        }
+
+        return hostName;
+    }
+
+    private void resolve(final InetAddress address) {
+        try (StoredContext ctx = threadPool.getThreadContext().stashContext()) {
+            threadPool.generic().execute(new AbstractRunnable() {
+
+                @Override
+                protected void doRun() throws Exception {
+                    //InetAddress caches the result itself, so resolve a fresh instance
+                    final String hostName = InetAddress.getByAddress(address.getAddress()).getHostName();
+                    hostNames.put(address, hostName);
+
+                    if (log.isDebugEnabled()) {
+                        log.debug("Resolved {} to {}", address, hostName);
+                    }
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    log.warn("Cannot resolve host name of {} due to {}", address, e.toString());
+                }
+
+                @Override
+                public void onRejection(Exception e) {
+                    pending.remove(address);
+                }
+
+                @Override
+                public void onAfter() {
+                    pending.remove(address);
+                }
+            });
+        }
+    }
+}
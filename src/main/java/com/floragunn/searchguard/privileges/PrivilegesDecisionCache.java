@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.privileges;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+
+import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
+import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of allowed/denied decisions of the role model.
+ * <p>
+ * Entries are keyed by the generation of the role model, the mapped SG roles, the required actions, the resolved
+ * request (indices and types) and the cluster metadata version. So decisions of a role model which was replaced
+ * by a reload are never returned, regardless of the order in which configuration listeners are notified.
+ * The cache is still flushed on reloads and metadata changes to release the stale entries.
+ */
+public class PrivilegesDecisionCache implements ConfigurationChangeListener, ClusterStateListener {
+
+    protected final Logger log = LogManager.getLogger(this.getClass());
+    private final ClusterService clusterService;
+    private final Cache<Key, Boolean> cache;
+
+    public PrivilegesDecisionCache(final ClusterService clusterService, final int maxSize) {
+        this.clusterService = clusterService;
+        this.cache = maxSize > 0 ? CacheBuilder.newBuilder().maximumSize(maxSize).concurrencyLevel(16).build() : null;
+    }
+
+    /**
+     * @param rolesGeneration the generation of the role model which is used for the evaluation
+     * @param mappedRoles the SG roles the user is mapped to
+     * @param userDependent true if the role model depends on user properties like ${user.name} or custom attributes
+     * @param user the current user, only taken into account if userDependent is true
+     * @param actions the actions which are required
+     * @param resolved the resolved request or null for cluster level actions
+     * @param variant distinguishes evaluation modes which yield different results for the same input (like multi rolespan)
+     * @param evaluation called on cache miss
+     */
+    public boolean isAllowed(final long rolesGeneration, final Set<String> mappedRoles, final boolean userDependent, final User user, final Set<String> actions,
+            final Resolved resolved, final int variant, final Callable<Boolean> evaluation) {
+
+        if (cache == null) {
+            return evaluate(evaluation);
+        }
+
+        final Key key = new Key(rolesGeneration, mappedRoles, userDependent ? userFingerprint(user) : null, actions, resolved, variant,
+                clusterService.state().metaData().version());
+
+        try {
+            return cache.get(key, evaluation);
+        } catch (ExecutionException e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    @Override
+    public void onChange(Settings configuration) {
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidate privileges decision cache ({} entries) due to configuration change", size());
+        }
+        invalidateAll();
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.metaDataChanged()) {
+            invalidateAll();
+        }
+    }
+
+    private static boolean evaluate(final Callable<Boolean> evaluation) {
+        try {
+            return evaluation.call();
+        } catch (Exception e) {
+            throw ExceptionsHelper.convertToElastic(e);
+        }
+    }
+
+    //all user properties which can be referenced by variables in the role model
+    static Object userFingerprint(final User user) {
+        if (user == null) {
+            return null;
+        }
+
+        return Arrays.asList(user.getName(), new HashSet<String>(user.getRoles()), new HashMap<String, String>(user.getCustomAttributesMap()));
+    }
+
+    private static final class Key {
+        private final long rolesGeneration;
+        private final Set<String> mappedRoles;
+        private final Object userFingerprint;
+        private final Set<String> actions;
+        private final Resolved resolved;
+        private final int variant;
+        private final long metaDataVersion;
+        private final int hashCode;
+
+        private Key(long rolesGeneration, Set<String> mappedRoles, Object userFingerprint, Set<String> actions, Resolved resolved, int variant,
+                long metaDataVersion) {
+            this.rolesGeneration = rolesGeneration;
+            this.mappedRoles = mappedRoles == null ? Collections.emptySet() : mappedRoles;
+            this.userFingerprint = userFingerprint;
+            this.actions = actions;
+            this.resolved = resolved;
+            this.variant = variant;
+            this.metaDataVersion = metaDataVersion;
+            this.hashCode = Objects.hash(rolesGeneration, this.mappedRoles, userFingerprint, actions, resolved, variant, metaDataVersion);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null)
+                return false;
+            if (getClass() != obj.getClass())
+                return false;
+            Key other = (Key) obj;
+            return hashCode == other.hashCode && rolesGeneration == other.rolesGeneration && variant == other.variant
+                    && metaDataVersion == other.metaDataVersion
+                    && mappedRoles.equals(other.mappedRoles) && Objects.equals(userFingerprint, other.userFingerprint)
+                    && Objects.equals(actions, other.actions) && Objects.equals(resolved, other.resolved);
+        }
+    }
+}
@@ -83,9 +83,13 @@ import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
 import com.floragunn.searchguard.sgconf.ConfigModel;
 import com.floragunn.searchguard.sgconf.ConfigModel.SgRoles;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ArrayListMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.MultimapBuilder.SetMultimapBuilder;
 import com.google.common.collect.SetMultimap;
@@ -119,11 +123,14 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
     private RoleMappingHolder roleMappingHolder = null;
     private TenantHolder tenantHolder = null;
     private final boolean enterpriseModulesEnabled;
+    private final PrivilegesDecisionCache decisionCache;
+    private final int roleMappingCacheSize;
+    private final HostNameResolver hostNameResolver;
 
     public PrivilegesEvaluator(final ClusterService clusterService, final ThreadPool threadPool,
             final ConfigurationRepository configurationRepository, final ActionGroupHolder ah, final IndexNameExpressionResolver resolver,
             AuditLog auditLog, final Settings settings, final PrivilegesInterceptor privilegesInterceptor, final ClusterInfoHolder clusterInfoHolder,
-            final IndexResolverReplacer irr, boolean enterpriseModulesEnabled) {
+            final IndexResolverReplacer irr, boolean enterpriseModulesEnabled, final HeaderObjectCache headerObjectCache) {
 
         super();
         this.configurationRepository = configurationRepository;
@@ -146,6 +153,9 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         this.checkSnapshotRestoreWritePrivileges = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_CHECK_SNAPSHOT_RESTORE_WRITE_PRIVILEGES,
                 ConfigConstants.SG_DEFAULT_CHECK_SNAPSHOT_RESTORE_WRITE_PRIVILEGES);
 
+        this.roleMappingCacheSize = settings.getAsInt(ConfigConstants.SEARCHGUARD_ROLES_MAPPING_CACHE_MAX_SIZE, 10000);
+        this.hostNameResolver = new HostNameResolver(threadPool);
+
         this.clusterInfoHolder = clusterInfoHolder;
         //this.typeSecurityDisabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_DISABLE_TYPE_SECURITY, false);
         configModel = new ConfigModel(ah);
@@ -154,16 +164,27 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         this.irr = irr;
         snapshotRestoreEvaluator = new SnapshotRestoreEvaluator(settings, auditLog);
         sgIndexAccessEvaluator = new SearchGuardIndexAccessEvaluator(settings, auditLog, irr);
-        dlsFlsEvaluator = new DlsFlsEvaluator(settings, threadPool);
+        dlsFlsEvaluator = new DlsFlsEvaluator(settings, threadPool, headerObjectCache);
         termsAggregationEvaluator = new TermsAggregationEvaluator();
         tenantHolder = new TenantHolder();
         configurationRepository.subscribeOnChange("roles", tenantHolder);
         this.enterpriseModulesEnabled = enterpriseModulesEnabled;
+
+        decisionCache = new PrivilegesDecisionCache(clusterService,
+                settings.getAsInt(ConfigConstants.SEARCHGUARD_PRIVILEGES_DECISION_CACHE_MAX_SIZE, 10000));
+        configurationRepository.subscribeOnChange("roles", decisionCache);
+        configurationRepository.subscribeOnChange("rolesmapping", decisionCache);
+        configurationRepository.subscribeOnChange("actiongroups", decisionCache);
+        configurationRepository.subscribeOnChange("config", decisionCache);
+        clusterService.addListener(decisionCache);
     }
 
     private class TenantHolder implements ConfigurationChangeListener {
 
         private SetMultimap<String, Tuple<String, Boolean>> tenantsMM = null;
+        //tenant settings and tenants per role of the last reload
+        private Map<String, Settings> tenantSettings = Collections.emptyMap();
+        private Map<String, Set<Tuple<String, Boolean>>> tenantTuples = Collections.emptyMap();
 
         public Map<String, Boolean> mapTenants(final User user, Set<String> roles) {
 
@@ -189,16 +210,26 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         public void onChange(Settings roles) {
 
             final Set<Future<Tuple<String, Set<Tuple<String, Boolean>>>>> futures = new HashSet<>(roles.size());
+            final Map<String, Settings> tenantSettings_ = new HashMap<>();
+            final Map<String, Set<Tuple<String, Boolean>>> tenants_ = new HashMap<>();
 
             final ExecutorService execs = Executors.newFixedThreadPool(10);
 
             for (String sgRole : roles.names()) {
 
+                final Settings tenants = getRolesSettings().getByPrefix(sgRole + ".tenants.");
+                tenantSettings_.put(sgRole, tenants);
+
+                //reuse the tenants of unchanged roles
+                if (tenantTuples.containsKey(sgRole) && tenants.equals(tenantSettings.get(sgRole))) {
+                    tenants_.put(sgRole, tenantTuples.get(sgRole));
+                    continue;
+                }
+
                 Future<Tuple<String, Set<Tuple<String, Boolean>>>> future = execs.submit(new Callable<Tuple<String, Set<Tuple<String, Boolean>>>>() {
                     @Override
                     public Tuple<String, Set<Tuple<String, Boolean>>> call() throws Exception {
                         final Set<Tuple<String, Boolean>> tuples = new HashSet<>();
-                        final Settings tenants = getRolesSettings().getByPrefix(sgRole + ".tenants.");
 
                         if (tenants != null) {
                             for (String tenant : tenants.names()) {
@@ -233,14 +264,20 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             }
 
             try {
-                final SetMultimap<String, Tuple<String, Boolean>> tenantsMM_ = SetMultimapBuilder.hashKeys(futures.size()).hashSetValues(16).build();
-
                 for (Future<Tuple<String, Set<Tuple<String, Boolean>>>> future : futures) {
                     Tuple<String, Set<Tuple<String, Boolean>>> result = future.get();
-                    tenantsMM_.putAll(result.v1(), result.v2());
+                    tenants_.put(result.v1(), result.v2());
+                }
+
+                final SetMultimap<String, Tuple<String, Boolean>> tenantsMM_ = SetMultimapBuilder.hashKeys(tenants_.size()).hashSetValues(16).build();
+
+                for (Map.Entry<String, Set<Tuple<String, Boolean>>> entry : tenants_.entrySet()) {
+                    tenantsMM_.putAll(entry.getKey(), entry.getValue());
                 }
 
                 tenantsMM = tenantsMM_;
+                tenantSettings = tenantSettings_;
+                tenantTuples = tenants_;
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 log.error("Thread interrupted (2) while loading roles");
@@ -255,10 +292,14 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
     private class RoleMappingHolder {
 
-        private ListMultimap<String, String> users;
-        private ListMultimap<Set<String>, String> abars;
-        private ListMultimap<String, String> bars;
-        private ListMultimap<String, String> hosts;
+        private List<Tuple<WildcardMatcher.Matcher, List<String>>> users;
+        private List<Tuple<List<WildcardMatcher.Matcher>, List<String>>> abars;
+        private List<Tuple<WildcardMatcher.Matcher, List<String>>> bars;
+        private List<Tuple<WildcardMatcher.Matcher, List<String>>> hosts;
+        //mapped roles per user and caller, a new holder (and therefore a new cache) is created on each role mapping change
+        private final Cache<RoleMappingKey, Set<String>> mappingCache = roleMappingCacheSize > 0
+                ? CacheBuilder.newBuilder().maximumSize(roleMappingCacheSize).concurrencyLevel(16).build()
+                : null;
 
         private RoleMappingHolder(Settings rolesMapping) {
 
@@ -292,10 +333,35 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     }
                 }
 
-                users = users_;
-                abars = abars_;
-                bars = bars_;
-                hosts = hosts_;
+                users = compile(users_);
+                bars = compile(bars_);
+                hosts = compile(hosts_);
+
+                final List<Tuple<List<WildcardMatcher.Matcher>, List<String>>> compiledAbars = new ArrayList<>(abars_.keySet().size());
+                for (Set<String> abar : abars_.keySet()) {
+                    final List<WildcardMatcher.Matcher> matchers = new ArrayList<>(abar.size());
+                    for (String pattern : abar) {
+                        matchers.add(WildcardMatcher.compile(pattern));
+                    }
+                    compiledAbars.add(new Tuple<>(matchers, abars_.get(abar)));
+                }
+                abars = compiledAbars;
+            }
+        }
+
+        private List<Tuple<WildcardMatcher.Matcher, List<String>>> compile(ListMultimap<String, String> mappings) {
+            final List<Tuple<WildcardMatcher.Matcher, List<String>>> compiled = new ArrayList<>(mappings.keySet().size());
+            for (String pattern : mappings.keySet()) {
+                compiled.add(new Tuple<>(WildcardMatcher.compile(pattern), mappings.get(pattern)));
+            }
+            return compiled;
+        }
+
+        private void addMatching(List<Tuple<WildcardMatcher.Matcher, List<String>>> mappings, String candidate, Set<String> sgRoles) {
+            for (Tuple<WildcardMatcher.Matcher, List<String>> mapping : mappings) {
+                if (mapping.v1().test(candidate)) {
+                    sgRoles.addAll(mapping.v2());
+                }
             }
         }
 
@@ -305,6 +371,44 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                 return Collections.emptySet();
             }
 
+            String ipAddress = null;
+            String hostString = null;
+            String resolvedHostName = null;
+
+            if (caller != null) {
+                //IPV4 or IPv6 (compressed and without scope identifiers)
+                ipAddress = caller.getAddress();
+
+                final String hostResolverMode = getConfigSettings().get("searchguard.dynamic.hosts_resolver_mode", "ip-only");
+
+                if (caller.address() != null
+                        && (hostResolverMode.equalsIgnoreCase("ip-hostname") || hostResolverMode.equalsIgnoreCase("ip-hostname-lookup"))) {
+                    hostString = caller.address().getHostString();
+                }
+
+                if (caller.address() != null && hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+                    resolvedHostName = hostNameResolver.getHostName(caller.address().getAddress());
+                }
+            }
+
+            if (mappingCache == null) {
+                return map(user, ipAddress, hostString, resolvedHostName);
+            }
+
+            final RoleMappingKey key = new RoleMappingKey(user.getName(), ImmutableSet.copyOf(user.getRoles()), ipAddress, hostString,
+                    resolvedHostName);
+            Set<String> sgRoles = mappingCache.getIfPresent(key);
+
+            if (sgRoles == null) {
+                sgRoles = map(user, ipAddress, hostString, resolvedHostName);
+                mappingCache.put(key, sgRoles);
+            }
+
+            return sgRoles;
+        }
+
+        private Set<String> map(final User user, final String ipAddress, final String hostString, final String resolvedHostName) {
+
             final Set<String> sgRoles = new TreeSet<String>();
 
             if (rolesMappingResolution == ConfigConstants.RolesMappingResolution.BOTH
@@ -318,52 +422,70 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
             if (((rolesMappingResolution == ConfigConstants.RolesMappingResolution.BOTH
                     || rolesMappingResolution == ConfigConstants.RolesMappingResolution.MAPPING_ONLY))) {
 
-                for (String p : WildcardMatcher.getAllMatchingPatterns(users.keySet(), user.getName())) {
-                    sgRoles.addAll(users.get(p));
-                }
+                addMatching(users, user.getName(), sgRoles);
 
-                for (String p : WildcardMatcher.getAllMatchingPatterns(bars.keySet(), user.getRoles())) {
-                    sgRoles.addAll(bars.get(p));
+                for (Tuple<WildcardMatcher.Matcher, List<String>> bar : bars) {
+                    if (bar.v1().matchAny(user.getRoles())) {
+                        sgRoles.addAll(bar.v2());
+                    }
                 }
 
-                for (Set<String> p : abars.keySet()) {
-                    if (WildcardMatcher.allPatternsMatched(p, user.getRoles())) {
-                        sgRoles.addAll(abars.get(p));
+                for (Tuple<List<WildcardMatcher.Matcher>, List<String>> abar : abars) {
+                    if (abar.v1().stream().allMatch(m -> m.matchAny(user.getRoles()))) {
+                        sgRoles.addAll(abar.v2());
                     }
                 }
 
-                if (caller != null) {
-                    //IPV4 or IPv6 (compressed and without scope identifiers)
-                    final String ipAddress = caller.getAddress();
+                if (ipAddress != null) {
+                    addMatching(hosts, ipAddress, sgRoles);
+                }
 
-                    for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), ipAddress)) {
-                        sgRoles.addAll(hosts.get(p));
-                    }
+                if (hostString != null) {
+                    addMatching(hosts, hostString, sgRoles);
+                }
 
-                    final String hostResolverMode = getConfigSettings().get("searchguard.dynamic.hosts_resolver_mode", "ip-only");
+                if (resolvedHostName != null) {
+                    addMatching(hosts, resolvedHostName, sgRoles);
+                }
+            }
 
-                    if (caller.address() != null
-                            && (hostResolverMode.equalsIgnoreCase("ip-hostname") || hostResolverMode.equalsIgnoreCase("ip-hostname-lookup"))) {
-                        final String hostName = caller.address().getHostString();
+            return Collections.unmodifiableSet(sgRoles);
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), hostName)) {
-                            sgRoles.addAll(hosts.get(p));
-                        }
-                    }
+        }
+    }
 
-                    if (caller.address() != null && hostResolverMode.equalsIgnoreCase("ip-hostname-lookup")) {
+    private static final class RoleMappingKey {
+        private final String userName;
+        private final Set<String> backendRoles;
+        private final String ipAddress;
+        private final String hostString;
+        private final String resolvedHostName;
+
+        private RoleMappingKey(String userName, Set<String> backendRoles, String ipAddress, String hostString, String resolvedHostName) {
+            this.userName = userName;
+            this.backendRoles = backendRoles;
+            this.ipAddress = ipAddress;
+            this.hostString = hostString;
+            this.resolvedHostName = resolvedHostName;
+        }
 
-                        final String resolvedHostName = caller.address().getHostName();
+        @Override
+        public int hashCode() {
+            return Objects.hash(userName, backendRoles, ipAddress, hostString, resolvedHostName);
+        }
 
-                        for (String p : WildcardMatcher.getAllMatchingPatterns(hosts.keySet(), resolvedHostName)) {
-                            sgRoles.addAll(hosts.get(p));
-                        }
-                    }
-                }
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
             }
-
-            return Collections.unmodifiableSet(sgRoles);
-
+            if (!(obj instanceof RoleMappingKey)) {
+                return false;
+            }
+            final RoleMappingKey other = (RoleMappingKey) obj;
+            return Objects.equals(userName, other.userName) && Objects.equals(backendRoles, other.backendRoles)
+                    && Objects.equals(ipAddress, other.ipAddress) && Objects.equals(hostString, other.hostString)
+                    && Objects.equals(resolvedHostName, other.resolvedHostName);
         }
     }
 
@@ -444,7 +566,9 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         final Settings config = getConfigSettings();
 
         if (isClusterPerm(action0)) {
-            if (!sgRoles.impliesClusterPermissionPermission(action0)) {
+            final String clusterAction = action0;
+            if (!decisionCache.isAllowed(sgRoles.getGeneration(), mappedRoles, false, user, Collections.singleton(clusterAction), null, 0,
+                    () -> sgRoles.impliesClusterPermissionPermission(clusterAction))) {
                 presponse.missingPrivileges.add(action0);
                 presponse.allowed = false;
                 log.info("No {}-level perm match for {} {} [Action [{}]] [RolesChecked {}]", "cluster", user, requestedResolved, action0,
@@ -463,6 +587,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
                         final Boolean replaceResult = privilegesInterceptor.replaceKibanaIndex(request, action0, user, config, requestedResolved,
                                 mapTenants(user, mappedRoles));
+                        //the interceptor may rewrite the indices of the request
+                        irr.invalidateResolved();
 
                         if (log.isDebugEnabled()) {
                             log.debug("Result from privileges interceptor for cluster perm: {}", replaceResult);
@@ -540,6 +666,8 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
             final Boolean replaceResult = privilegesInterceptor.replaceKibanaIndex(request, action0, user, config, requestedResolved,
                     mapTenants(user, mappedRoles));
+            //the interceptor may rewrite the indices of the request
+            irr.invalidateResolved();
 
             if (log.isDebugEnabled()) {
                 log.debug("Result from privileges interceptor: {}", replaceResult);
@@ -574,6 +702,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     if(request instanceof SearchRequest) {
                         ((SearchRequest) request).indices(new String[0]);
                         ((SearchRequest) request).indicesOptions(IndicesOptions.fromOptions(true, true, false, false));
+                        irr.invalidateResolved();
                         presponse.missingPrivileges.clear();
                         presponse.allowed = true;
                         return presponse;
@@ -582,6 +711,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     if(request instanceof ClusterSearchShardsRequest) {
                         ((ClusterSearchShardsRequest) request).indices(new String[0]);
                         ((ClusterSearchShardsRequest) request).indicesOptions(IndicesOptions.fromOptions(true, true, false, false));
+                        irr.invalidateResolved();
                         presponse.missingPrivileges.clear();
                         presponse.allowed = true;
                         return presponse;
@@ -590,6 +720,7 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
                     if(request instanceof GetFieldMappingsRequest) {
                         ((GetFieldMappingsRequest) request).indices(new String[0]);
                         ((GetFieldMappingsRequest) request).indicesOptions(IndicesOptions.fromOptions(true, true, false, false));
+                        irr.invalidateResolved();
                         presponse.missingPrivileges.clear();
                         presponse.allowed = true;
                         return presponse;
@@ -608,14 +739,15 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
         }
 
         //not bulk, mget, etc request here
-        boolean permGiven = false;
-
-        if (config.getAsBoolean("searchguard.dynamic.multi_rolespan_enabled", false)) {
-            permGiven = sgRoles.impliesTypePermGlobal(requestedResolved, user, allIndexPermsRequiredA, resolver, clusterService);
-        } else {
-            permGiven = sgRoles.get(requestedResolved, user, allIndexPermsRequiredA, resolver, clusterService);
-
-        }
+        final boolean multiRolespan = config.getAsBoolean("searchguard.dynamic.multi_rolespan_enabled", false);
+        final boolean permGiven = decisionCache.isAllowed(sgRoles.getGeneration(), mappedRoles, sgRoles.hasUserDependentIndexPatterns(), user, allIndexPermsRequired,
+                requestedResolved, multiRolespan ? 1 : 0, () -> {
+                    if (multiRolespan) {
+                        return sgRoles.impliesTypePermGlobal(requestedResolved, user, allIndexPermsRequiredA, resolver, clusterService);
+                    } else {
+                        return sgRoles.get(requestedResolved, user, allIndexPermsRequiredA, resolver, clusterService);
+                    }
+                });
 
         if (!permGiven) {
             log.info("No {}-level perm match for {} {} [Action [{}]] [RolesChecked {}]", "index", user, requestedResolved, action0,
@@ -638,6 +770,10 @@ public class PrivilegesEvaluator implements ConfigurationChangeListener {
 
     }
 
+    public ConfigModel.ReloadStats getRolesReloadStats() {
+        return configModel.getLastReloadStats();
+    }
+
     public Set<String> mapSgRoles(final User user, final TransportAddress caller) {
         return this.roleMappingHolder.map(user, caller);
     }
@@ -19,6 +19,9 @@ package com.floragunn.searchguard.resolver;
 
 import java.io.IOException;
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,12 +29,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Set;
-import java.util.SortedMap;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
@@ -73,10 +79,13 @@ import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.AliasOrIndex;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexNotFoundException;
@@ -96,13 +105,19 @@ import com.google.common.collect.Sets;
 public final class IndexResolverReplacer implements ConfigurationChangeListener {
 
     private static final Set<String> NULL_SET = Sets.newHashSet((String)null);
-    private final Map<Class<?>, Method> typeCache = Collections.synchronizedMap(new HashMap<Class<?>, Method>(100));
-    private final Map<Class<?>, Method> typesCache = Collections.synchronizedMap(new HashMap<Class<?>, Method>(100));
+    private static final ClassValue<TypeAccessors> TYPE_ACCESSORS = new ClassValue<TypeAccessors>() {
+        @Override
+        protected TypeAccessors computeValue(Class<?> requestClass) {
+            return new TypeAccessors(requestClass);
+        }
+    };
     private final Logger log = LogManager.getLogger(this.getClass());
     private final IndexNameExpressionResolver resolver;
     private final ClusterService clusterService;
     private final ClusterInfoHolder clusterInfoHolder;
+    private final ThreadLocal<ResolvedMemo> resolvedMemo = new ThreadLocal<>();
     private volatile boolean respectRequestIndicesOptions = false;
+    private volatile MetaDataSnapshot metaDataSnapshot;
 
     public IndexResolverReplacer(IndexNameExpressionResolver resolver, ClusterService clusterService, ClusterInfoHolder clusterInfoHolder) {
         super();
@@ -149,7 +164,8 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         return false;
     }
 
-    private Resolved resolveIndexPatterns(final IndicesOptions indicesOptions, final Object request, final String... requestedPatterns0) {
+    private Resolved resolveIndexPatterns(final IndicesOptions indicesOptions, final Object request, final Set<String> requestTypes,
+            final String... requestedPatterns0) {
 
         if(log.isTraceEnabled()) {
             log.trace("resolve requestedPatterns: "+Arrays.toString(requestedPatterns0));
@@ -215,8 +231,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
 
            ClusterState state = clusterService.state();
     
-           final SortedMap<String, AliasOrIndex> lookup = state.metaData().getAliasAndIndexLookup();
-           final Set<String> aliases = lookup.entrySet().stream().filter(e->e.getValue().isAlias()).map(e->e.getKey()).collect(Collectors.toSet());
+           final MetaDataSnapshot snapshot = getMetaDataSnapshot(state);
     
            matchingAliases = new HashSet<>(localRequestedPatterns.size()*10);
            matchingIndices = new HashSet<>(localRequestedPatterns.size()*10);
@@ -225,8 +240,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
            //fill matchingAliases
            for (String localRequestedPattern: localRequestedPatterns) {
                final String requestedPattern = resolver.resolveDateMathExpression(localRequestedPattern);
-               final List<String> _aliases = WildcardMatcher.getMatchAny(requestedPattern, aliases);
-               matchingAliases.addAll(_aliases);
+               matchingAliases.addAll(snapshot.getMatchingAliases(requestedPattern));
            }
     
     
@@ -264,7 +278,10 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
     
                 }
     
-                final List<String> _aliases = WildcardMatcher.getMatchAny(localRequestedPatterns.toArray(new String[0]), aliases);
+                final Set<String> _aliases = new HashSet<>();
+                for (String localRequestedPattern: localRequestedPatterns) {
+                    _aliases.addAll(snapshot.getMatchingAliases(localRequestedPattern));
+                }
     
                 matchingAllIndices.addAll(_indices);
     
@@ -275,8 +292,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
                    if(!_indices.isEmpty()) {
     
                        for(String al:_aliases) {
-                           Set<String> doubleIndices = lookup.get(al).getIndices().stream().map(a->a.getIndex().getName()).collect(Collectors.toSet());
-                           _indices.removeAll(doubleIndices);
+                           _indices.removeAll(snapshot.getAliasIndices(al));
                        }
     
                        matchingIndices.addAll(_indices);
@@ -286,8 +302,21 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
        }
 
         return new Resolved.Builder(matchingAliases, matchingIndices, matchingAllIndices, 
-                null, requestedPatterns0, remoteIndices).addTypes(resolveTypes(request)).build();
+                null, requestedPatterns0, remoteIndices).addTypes(requestTypes).build();
+
+    }
+
+    private MetaDataSnapshot getMetaDataSnapshot(final ClusterState state) {
+        final MetaData metaData = state.metaData();
+        final MetaDataSnapshot cached = metaDataSnapshot;
+
+        if (cached != null && cached.metaDataVersion == metaData.version()) {
+            return cached;
+        }
 
+        final MetaDataSnapshot snapshot = new MetaDataSnapshot(metaData);
+        metaDataSnapshot = snapshot;
+        return snapshot;
     }
 
     @SuppressWarnings("rawtypes")
@@ -310,55 +339,28 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
                 requestTypes.add(((GetRequest) request).type());
             } else {
 
-                Method typeMethod = null;
-                if (typeCache.containsKey(requestClass)) {
-                    typeMethod = typeCache.get(requestClass);
-                } else {
-                    try {
-                        typeMethod = requestClass.getMethod("type");
-                        typeCache.put(requestClass, typeMethod);
-                    } catch (NoSuchMethodException e) {
-                        typeCache.put(requestClass, null);
-                    } catch (SecurityException e) {
-                        log.error("Cannot evaluate type() for {} due to {}", requestClass, e, e);
-                    }
+                final TypeAccessors accessors = TYPE_ACCESSORS.get(requestClass);
 
-                }
-
-                Method typesMethod = null;
-                if (typesCache.containsKey(requestClass)) {
-                    typesMethod = typesCache.get(requestClass);
-                } else {
+                if (accessors.type != null) {
                     try {
-                        typesMethod = requestClass.getMethod("types");
-                        typesCache.put(requestClass, typesMethod);
-                    } catch (NoSuchMethodException e) {
-                        typesCache.put(requestClass, null);
-                    } catch (SecurityException e) {
-                        log.error("Cannot evaluate types() for {} due to {}", requestClass, e, e);
-                    }
-
-                }
-
-                if (typeMethod != null) {
-                    try {
-                        String type = (String) typeMethod.invoke(request);
+                        //invokeExact requires the exact (Object)Object call site type
+                        final Object type = accessors.type.invokeExact(request);
                         if (type != null) {
-                            requestTypes.add(type);
+                            requestTypes.add((String) type);
                         }
-                    } catch (Exception e) {
+                    } catch (Throwable e) {
                         log.error("Unable to invoke type() for {} due to", requestClass, e);
                     }
                 }
 
-                if (typesMethod != null) {
+                if (accessors.types != null) {
                     try {
-                        final String[] types = (String[]) typesMethod.invoke(request);
+                        final Object types = accessors.types.invokeExact(request);
 
                         if (types != null) {
-                            requestTypes.addAll(Arrays.asList(types));
+                            requestTypes.addAll(Arrays.asList((String[]) types));
                         }
-                    } catch (Exception e) {
+                    } catch (Throwable e) {
                         log.error("Unable to invoke types() for {} due to", requestClass, e);
                     }
                 }
@@ -418,6 +420,15 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
 
     //dnfof
     public boolean replace(final TransportRequest request, boolean retainMode, String... replacements) {
+        try {
+            return replace0(request, retainMode, replacements);
+        } finally {
+            //the indices of the request (or its sub requests) may have changed
+            invalidateResolved();
+        }
+    }
+
+    private boolean replace0(final TransportRequest request, boolean retainMode, String... replacements) {
         return getOrReplaceAllIndices(request, new IndicesProvider() {
 
             @Override
@@ -438,19 +449,89 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         }, false);
     }
 
+    /**
+     * Memoizes the resolutions of requests on the current thread until the returned scope is closed.
+     * Scopes may be nested, closing a scope restores the enclosing one. Closing is idempotent.
+     */
+    public Releasable memoizeResolved() {
+        final ResolvedMemo previous = resolvedMemo.get();
+        final ResolvedMemo memo = new ResolvedMemo();
+        resolvedMemo.set(memo);
+
+        return () -> {
+            memo.close();
+
+            //the scope may also be closed by another thread, which must not touch the memo of this thread
+            if (resolvedMemo.get() == memo) {
+                if (previous == null) {
+                    resolvedMemo.remove();
+                } else {
+                    resolvedMemo.set(previous);
+                }
+            }
+        };
+    }
+
+    /**
+     * Must be called whenever the indices of a request are changed without {@link #replace(TransportRequest, boolean, String...)}
+     */
+    public void invalidateResolved() {
+        final ResolvedMemo memo = resolvedMemo.get();
+
+        if (memo != null) {
+            memo.clear();
+        }
+    }
+
+    /**
+     * Resolves the aliases, indices and types of the given request. Within a scope opened by
+     * {@link #memoizeResolved()} the result is memoized per request and cluster metadata version,
+     * so the filter, the privileges evaluator and the compliance checks resolve a request only once.
+     */
     public Resolved resolveRequest(final Object request) {
+        final ResolvedMemo memo = resolvedMemo.get();
+        final long metaDataVersion = clusterService.state().metaData().version();
+        final Resolved memoized = memo == null ? null : memo.get(request, metaDataVersion);
+
+        if (memoized != null) {
+            if (log.isTraceEnabled()) {
+                log.trace("Use memoized resolution for {}: {}", request.getClass().getSimpleName(), memoized);
+            }
+            return memoized;
+        }
+
+        final Resolved resolved = resolveRequest0(request);
+
+        if (memo != null) {
+            memo.put(request, metaDataVersion, resolved);
+        }
+
+        return resolved;
+    }
+
+    private Resolved resolveRequest0(final Object request) {
         if(log.isDebugEnabled()) {
             log.debug("Resolve aliases, indices and types from {}", request.getClass().getSimpleName());
         }
 
         final Resolved.Builder resolvedBuilder = new Resolved.Builder();
         final AtomicBoolean isIndicesRequest = new AtomicBoolean();
+        //items of bulk and multi requests mostly target the same few indices, so resolve each distinct expression only once
+        final Map<ResolutionKey, Resolved> resolvedPerKey = new HashMap<>();
         getOrReplaceAllIndices(request, new IndicesProvider() {
 
             @Override
             public String[] provide(String[] original, Object localRequest, boolean supportsReplace) {
                 final IndicesOptions indicesOptions = indicesOptionsFrom(localRequest);
-                final Resolved iResolved = resolveIndexPatterns(indicesOptions, localRequest, original);
+                final Set<String> requestTypes = resolveTypes(localRequest);
+                final ResolutionKey key = new ResolutionKey(original, indicesOptions, localRequest, requestTypes);
+                Resolved iResolved = resolvedPerKey.get(key);
+
+                if (iResolved == null) {
+                    iResolved = resolveIndexPatterns(indicesOptions, localRequest, requestTypes, original);
+                    resolvedPerKey.put(key, iResolved);
+                }
+
                 resolvedBuilder.add(iResolved);
                 isIndicesRequest.set(true);
 
@@ -468,7 +549,7 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         }
         
         if(log.isTraceEnabled()) {
-            log.trace("Finally resolved for {}: {}", request.getClass().getSimpleName(), resolvedBuilder.build());
+            log.trace("Finally resolved for {}: {} ({} distinct expressions)", request.getClass().getSimpleName(), resolvedBuilder.build(), resolvedPerKey.size());
         }
 
         return resolvedBuilder.build();
@@ -709,6 +790,151 @@ public final class IndexResolverReplacer implements ConfigurationChangeListener
         }
     }
 
+    //type() and types() accessors of a request class, null if the class has no (accessible) accessor
+    private static final class TypeAccessors {
+        private static final MethodType ACCESSOR_TYPE = MethodType.methodType(Object.class, Object.class);
+        private final MethodHandle type;
+        private final MethodHandle types;
+
+        private TypeAccessors(final Class<?> requestClass) {
+            this.type = accessor(requestClass, "type", String.class);
+            this.types = accessor(requestClass, "types", String[].class);
+        }
+
+        private static MethodHandle accessor(final Class<?> requestClass, final String name, final Class<?> returnType) {
+            try {
+                final Method method = requestClass.getMethod(name);
+
+                if (method.getReturnType() != returnType) {
+                    return null;
+                }
+
+                return MethodHandles.publicLookup().unreflect(method).asType(ACCESSOR_TYPE);
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                return null;
+            } catch (SecurityException e) {
+                LogManager.getLogger(IndexResolverReplacer.class).error("Cannot evaluate {}() for {} due to {}", name, requestClass, e, e);
+                return null;
+            }
+        }
+    }
+
+    //resolutions of the requests handled within one memo scope, keyed by request identity
+    private static final class ResolvedMemo {
+        private static final int MAX_ENTRIES = 64;
+        private final Map<Object, Tuple<Long, Resolved>> entries = new IdentityHashMap<>();
+        private boolean closed;
+
+        private synchronized Resolved get(final Object request, final long metaDataVersion) {
+            final Tuple<Long, Resolved> entry = entries.get(request);
+            return entry != null && entry.v1() == metaDataVersion ? entry.v2() : null;
+        }
+
+        private synchronized void put(final Object request, final long metaDataVersion, final Resolved resolved) {
+            if (!closed && (entries.size() < MAX_ENTRIES || entries.containsKey(request))) {
+                entries.put(request, new Tuple<Long, Resolved>(metaDataVersion, resolved));
+            }
+        }
+
+        private synchronized void clear() {
+            entries.clear();
+        }
+
+        private synchronized void close() {
+            entries.clear();
+            closed = true;
+        }
+    }
+
+    //everything the resolution of a single (sub) request depends on
+    private static final class ResolutionKey {
+        private final List<String> patterns;
+        private final IndicesOptions indicesOptions;
+        private final boolean crossClusterCapable;
+        private final Set<String> types;
+
+        private ResolutionKey(final String[] patterns, final IndicesOptions indicesOptions, final Object request, final Set<String> types) {
+            this.patterns = patterns == null ? null : Arrays.asList(patterns);
+            this.indicesOptions = indicesOptions;
+            this.crossClusterCapable = request instanceof FieldCapabilitiesRequest || request instanceof SearchRequest;
+            this.types = types;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(patterns, indicesOptions, crossClusterCapable, types);
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof ResolutionKey)) {
+                return false;
+            }
+            final ResolutionKey other = (ResolutionKey) obj;
+            return crossClusterCapable == other.crossClusterCapable && Objects.equals(patterns, other.patterns)
+                    && Objects.equals(indicesOptions, other.indicesOptions) && Objects.equals(types, other.types);
+        }
+    }
+
+    //aliases of a specific cluster metadata version, shared by all resolutions until the metadata changes
+    private static final class MetaDataSnapshot {
+        private final long metaDataVersion;
+        private final NavigableSet<String> aliases;
+        private final Map<String, Set<String>> aliasIndices;
+
+        private MetaDataSnapshot(final MetaData metaData) {
+            final NavigableSet<String> aliases = new TreeSet<>();
+            final Map<String, Set<String>> aliasIndices = new HashMap<>();
+
+            for (Map.Entry<String, AliasOrIndex> entry : metaData.getAliasAndIndexLookup().entrySet()) {
+                if (entry.getValue().isAlias()) {
+                    aliases.add(entry.getKey());
+                    aliasIndices.put(entry.getKey(), Collections.unmodifiableSet(
+                            entry.getValue().getIndices().stream().map(a -> a.getIndex().getName()).collect(Collectors.toSet())));
+                }
+            }
+
+            this.metaDataVersion = metaData.version();
+            this.aliases = Collections.unmodifiableNavigableSet(aliases);
+            this.aliasIndices = Collections.unmodifiableMap(aliasIndices);
+        }
+
+        private List<String> getMatchingAliases(final String pattern) {
+            if (pattern == null) {
+                return Collections.emptyList();
+            }
+
+            if (!WildcardMatcher.containsWildcard(pattern)) {
+                return aliases.contains(pattern) ? Collections.singletonList(pattern) : Collections.emptyList();
+            }
+
+            //trailing wildcard only (like logstash-*), a range lookup in the sorted aliases
+            if (pattern.indexOf('*') == pattern.length() - 1 && pattern.indexOf('?') < 0 && !pattern.startsWith("/")) {
+                final String prefix = pattern.substring(0, pattern.length() - 1);
+                final List<String> matches = new ArrayList<>();
+
+                for (String alias : aliases.tailSet(prefix, true)) {
+                    if (!alias.startsWith(prefix)) {
+                        break;
+                    }
+                    matches.add(alias);
+                }
+
+                return matches;
+            }
+
+            return WildcardMatcher.getMatchAny(pattern, aliases);
+        }
+
+        private Set<String> getAliasIndices(final String alias) {
+            final Set<String> indices = aliasIndices.get(alias);
+            return indices == null ? Collections.emptySet() : indices;
+        }
+    }
+
     private List<String> renamedIndices(final RestoreSnapshotRequest request, final List<String> filteredIndices) {
         try {
             final List<String> renamedIndices = new ArrayList<>();
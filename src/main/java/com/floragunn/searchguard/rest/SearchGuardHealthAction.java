@@ -33,14 +33,22 @@ import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
 
 import com.floragunn.searchguard.auth.BackendRegistry;
+import com.floragunn.searchguard.configuration.FlsQueryCache;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 
 public class SearchGuardHealthAction extends BaseRestHandler {
 
     private final BackendRegistry registry;
+    //null if dls/fls is not available
+    private final FlsQueryCache flsQueryCache;
+    private final HeaderObjectCache headerObjectCache;
     
-    public SearchGuardHealthAction(final Settings settings, final RestController controller, final BackendRegistry registry) {
+    public SearchGuardHealthAction(final Settings settings, final RestController controller, final BackendRegistry registry,
+            final FlsQueryCache flsQueryCache, final HeaderObjectCache headerObjectCache) {
         super(settings);
         this.registry = registry;
+        this.flsQueryCache = flsQueryCache;
+        this.headerObjectCache = headerObjectCache;
         controller.registerHandler(GET, "/_searchguard/health", this);
         controller.registerHandler(POST, "/_searchguard/health", this);
     }
@@ -73,6 +81,15 @@ public class SearchGuardHealthAction extends BaseRestHandler {
                     builder.field("message", message);
                     builder.field("mode", mode);
                     builder.field("status", status);
+                    headerObjectCache.toXContent(builder);
+                    builder.startObject("auth_cache");
+                    builder.field("evicted_on_last_reload", registry.getCacheEvictionsOnLastReload());
+                    builder.field("evicted_on_reload_total", registry.getCacheEvictionsOnReload());
+                    builder.field("refreshed_ahead_total", registry.getCacheRefreshes());
+                    builder.endObject();
+                    if (flsQueryCache != null) {
+                        flsQueryCache.toXContent(builder);
+                    }
                     builder.endObject();
                     response = new BytesRestResponse(restStatus, builder);
 
@@ -33,11 +33,13 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.cluster.ClusterState;
 import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.collect.Tuple;
@@ -49,7 +51,12 @@ import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
 import com.floragunn.searchguard.support.WildcardMatcher;
 import com.floragunn.searchguard.user.User;
 import com.google.common.base.Joiner;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 
@@ -57,8 +64,22 @@ public class ConfigModel implements ConfigurationChangeListener {
 
     protected final Logger log = LogManager.getLogger(this.getClass());
     private static final Set<String> IGNORED_TYPES = ImmutableSet.of("_dls_", "_fls_", "_masked_fields_");
+    //canonical instances for the role model, weak so that definitions which are no longer used can be collected
+    //per instance and not static because index patterns cache cluster state dependent data
+    //and several nodes of different clusters may run in one JVM
+    private final Interner<String> stringInterner = Interners.newWeakInterner();
+    private final Interner<ImmutableSet<String>> stringSetInterner = Interners.newWeakInterner();
+    private final Interner<Tenant> tenantInterner = Interners.newWeakInterner();
+    private final Interner<TypePerm> typePermInterner = Interners.newWeakInterner();
+    private final Interner<IndexPattern> indexPatternInterner = Interners.newWeakInterner();
+    //keyed by identity of interned permission sets
+    private final LoadingCache<ImmutableSet<String>, WildcardMatcher.Matcher> matchers = CacheBuilder.newBuilder().weakKeys()
+            .build(CacheLoader.from(perms -> WildcardMatcher.compile(perms)));
     private final ActionGroupHolder ah;
+    private final AtomicLong generation = new AtomicLong();
     private SgRoles sgRoles = null;
+    private volatile RolesSnapshot snapshot;
+    private volatile ReloadStats lastReloadStats;
 
     public ConfigModel(final ActionGroupHolder ah) {
         this.ah = ah;
@@ -77,83 +98,42 @@ public class ConfigModel implements ConfigurationChangeListener {
         return sgRoles;
     }
 
+    public ReloadStats getLastReloadStats() {
+        return lastReloadStats;
+    }
+
+    /**
+     * Builds the role model for the given roles. Roles whose settings did not change since the last reload are reused
+     * as long as the action groups did not change either, only new and changed roles are rebuilt.
+     */
     private SgRoles reload(Settings rolesSettings) {
 
-        final Set<Future<SgRole>> futures = new HashSet<>(5000);
+        final long start = System.nanoTime();
+        final RolesSnapshot previous = this.snapshot;
+        final Settings actionGroups = ah.getActionGroupsSettings();
+        final boolean actionGroupsChanged = previous == null || !Objects.equals(previous.actionGroups, actionGroups);
+        final Map<String, Settings> roleSettings = new HashMap<>();
+        final Map<String, SgRole> roles = new HashMap<>();
+        final Map<String, Future<SgRole>> futures = new HashMap<>();
         final ExecutorService execs = Executors.newFixedThreadPool(10);
 
         for (String sgRole : rolesSettings.names()) {
 
-            Future<SgRole> future = execs.submit(new Callable<SgRole>() {
-
-                @Override
-                public SgRole call() throws Exception {
-                    SgRole _sgRole = new SgRole(sgRole);
-
-                    final Settings sgRoleSettings = rolesSettings.getByPrefix(sgRole);
-                    if (!sgRoleSettings.names().isEmpty()) {
-                        final Set<String> permittedClusterActions = ah.resolvedActions(sgRoleSettings.getAsList(".cluster", Collections.emptyList()));
-                        _sgRole.addClusterPerms(permittedClusterActions);
-
-                        Settings tenants = rolesSettings.getByPrefix(sgRole + ".tenants.");
-
-                        if (tenants != null) {
-                            for (String tenant : tenants.names()) {
-
-                                //if(tenant.equals(user.getName())) {
-                                //    continue;
-                                //}
-
-                                if ("RW".equalsIgnoreCase(tenants.get(tenant, "RO"))) {
-                                    _sgRole.addTenant(new Tenant(tenant, true));
-                                } else {
-                                    _sgRole.addTenant(new Tenant(tenant, false));
-                                    //if(_sgRole.tenants.stream().filter(t->t.tenant.equals(tenant)).count() > 0) { //RW outperforms RO
-                                    //    _sgRole.addTenant(new Tenant(tenant, false));
-                                    //}
-                                }
-                            }
-                        }
-
-                        final Map<String, Settings> permittedAliasesIndices = sgRoleSettings.getGroups(".indices");
-
-                        for (final String permittedAliasesIndex : permittedAliasesIndices.keySet()) {
-
-                            final String resolvedRole = sgRole;
-                            final String indexPattern = permittedAliasesIndex;
-
-                            final String dls = rolesSettings.get(resolvedRole + ".indices." + indexPattern + "._dls_");
-                            final List<String> fls = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._fls_");
-                            final List<String> maskedFields = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._masked_fields_");
-
-                            IndexPattern _indexPattern = new IndexPattern(indexPattern);
-                            _indexPattern.setDlsQuery(dls);
-                            _indexPattern.addFlsFields(fls);
-                            _indexPattern.addMaskedFields(maskedFields);
-
-                            for (String type : permittedAliasesIndices.get(indexPattern).names()) {
-
-                                if (IGNORED_TYPES.contains(type)) {
-                                    continue;
-                                }
-
-                                TypePerm typePerm = new TypePerm(type);
-                                final List<String> perms = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "." + type);
-                                typePerm.addPerms(ah.resolvedActions(perms));
-                                _indexPattern.addTypePerms(typePerm);
-                            }
+            final Settings sgRoleSettings = rolesSettings.getByPrefix(sgRole);
+            roleSettings.put(sgRole, sgRoleSettings);
 
-                            _sgRole.addIndexPattern(_indexPattern);
+            if (!actionGroupsChanged && previous.roles.containsKey(sgRole) && sgRoleSettings.equals(previous.roleSettings.get(sgRole))) {
+                roles.put(sgRole, previous.roles.get(sgRole));
+                continue;
+            }
 
-                        }
-                        return _sgRole;
-                    }
+            futures.put(sgRole, execs.submit(new Callable<SgRole>() {
 
-                    return null;
+                @Override
+                public SgRole call() throws Exception {
+                    return buildSgRole(sgRole, sgRoleSettings, rolesSettings);
                 }
-            });
-
-            futures.add(future);
+            }));
         }
 
         execs.shutdown();
@@ -166,9 +146,30 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
 
         try {
-            SgRoles _sgRoles = new SgRoles(futures.size());
-            for (Future<SgRole> future : futures) {
-                _sgRoles.addSgRole(future.get());
+            for (Entry<String, Future<SgRole>> future : futures.entrySet()) {
+                roles.put(future.getKey(), future.getValue().get());
+            }
+
+            SgRoles _sgRoles = new SgRoles(roles.size(), generation.incrementAndGet());
+            for (SgRole sgRole : roles.values()) {
+                _sgRoles.addSgRole(sgRole);
+            }
+
+            int removed = 0;
+            if (previous != null) {
+                for (String sgRole : previous.roles.keySet()) {
+                    if (!roles.containsKey(sgRole)) {
+                        removed++;
+                    }
+                }
+            }
+
+            this.snapshot = new RolesSnapshot(actionGroups, roleSettings, roles);
+            this.lastReloadStats = new ReloadStats(roles.size(), futures.size(), roles.size() - futures.size(), removed,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+
+            if (log.isDebugEnabled()) {
+                log.debug("Reloaded roles: {}", lastReloadStats);
             }
 
             return _sgRoles;
@@ -182,6 +183,136 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
     }
 
+    private SgRole buildSgRole(final String sgRole, final Settings sgRoleSettings, final Settings rolesSettings) {
+
+        if (sgRoleSettings.names().isEmpty()) {
+            return null;
+        }
+
+        final ImmutableSet<String> permittedClusterActions = internSet(
+                ah.resolvedActions(sgRoleSettings.getAsList(".cluster", Collections.emptyList())));
+        final ImmutableSet.Builder<Tenant> tenants = ImmutableSet.builder();
+        final ImmutableSet.Builder<IndexPattern> indexPatterns = ImmutableSet.builder();
+
+        Settings tenantSettings = rolesSettings.getByPrefix(sgRole + ".tenants.");
+
+        if (tenantSettings != null) {
+            for (String tenant : tenantSettings.names()) {
+
+                //if(tenant.equals(user.getName())) {
+                //    continue;
+                //}
+
+                final boolean readWrite = "RW".equalsIgnoreCase(tenantSettings.get(tenant, "RO"));
+                tenants.add(tenantInterner.intern(new Tenant(stringInterner.intern(tenant), readWrite)));
+                //if(_sgRole.tenants.stream().filter(t->t.tenant.equals(tenant)).count() > 0) { //RW outperforms RO
+                //    _sgRole.addTenant(new Tenant(tenant, false));
+                //}
+            }
+        }
+
+        final Map<String, Settings> permittedAliasesIndices = sgRoleSettings.getGroups(".indices");
+
+        for (final String permittedAliasesIndex : permittedAliasesIndices.keySet()) {
+
+            final String resolvedRole = sgRole;
+            final String indexPattern = permittedAliasesIndex;
+
+            final String dls = rolesSettings.get(resolvedRole + ".indices." + indexPattern + "._dls_");
+            final List<String> fls = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._fls_");
+            final List<String> maskedFields = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "._masked_fields_");
+
+            final ImmutableSet.Builder<TypePerm> typePerms = ImmutableSet.builder();
+
+            for (String type : permittedAliasesIndices.get(indexPattern).names()) {
+
+                if (IGNORED_TYPES.contains(type)) {
+                    continue;
+                }
+
+                final List<String> perms = rolesSettings.getAsList(resolvedRole + ".indices." + indexPattern + "." + type);
+                final ImmutableSet<String> resolvedPerms = internSet(ah.resolvedActions(perms));
+                typePerms.add(typePermInterner.intern(new TypePerm(stringInterner.intern(type), resolvedPerms,
+                        matchers.getUnchecked(resolvedPerms))));
+            }
+
+            indexPatterns.add(indexPatternInterner.intern(new IndexPattern(stringInterner.intern(indexPattern), dls == null ? null : stringInterner.intern(dls),
+                    internSet(fls), internSet(maskedFields), typePerms.build())));
+
+        }
+
+        return new SgRole(sgRole, tenants.build(), indexPatterns.build(), permittedClusterActions,
+                matchers.getUnchecked(permittedClusterActions));
+    }
+
+    //returns the canonical instance of the given set, all its elements are interned as well
+    private ImmutableSet<String> internSet(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return ImmutableSet.of();
+        }
+
+        final ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (String value : values) {
+            builder.add(stringInterner.intern(value));
+        }
+        return stringSetInterner.intern(builder.build());
+    }
+
+    //the input and result of the last successful reload
+    private static class RolesSnapshot {
+        private final Settings actionGroups;
+        private final Map<String, Settings> roleSettings;
+        //may contain null values for roles without settings
+        private final Map<String, SgRole> roles;
+
+        private RolesSnapshot(Settings actionGroups, Map<String, Settings> roleSettings, Map<String, SgRole> roles) {
+            this.actionGroups = actionGroups;
+            this.roleSettings = roleSettings;
+            this.roles = roles;
+        }
+    }
+
+    public static class ReloadStats {
+        private final int roles;
+        private final int rebuilt;
+        private final int reused;
+        private final int removed;
+        private final long tookInMillis;
+
+        private ReloadStats(int roles, int rebuilt, int reused, int removed, long tookInMillis) {
+            this.roles = roles;
+            this.rebuilt = rebuilt;
+            this.reused = reused;
+            this.removed = removed;
+            this.tookInMillis = tookInMillis;
+        }
+
+        public int getRoles() {
+            return roles;
+        }
+
+        public int getRebuilt() {
+            return rebuilt;
+        }
+
+        public int getReused() {
+            return reused;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        public long getTookInMillis() {
+            return tookInMillis;
+        }
+
+        @Override
+        public String toString() {
+            return roles + " roles (" + rebuilt + " rebuilt, " + reused + " unchanged, " + removed + " removed) in " + tookInMillis + " ms";
+        }
+    }
+
     //beans
 
     public static class SgRoles {
@@ -189,9 +320,18 @@ public class ConfigModel implements ConfigurationChangeListener {
         protected final Logger log = LogManager.getLogger(this.getClass());
 
         final Set<SgRole> roles;
+        private final long generation;
 
-        private SgRoles(int roleCount) {
+        private SgRoles(int roleCount, long generation) {
             roles = new HashSet<>(roleCount);
+            this.generation = generation;
+        }
+
+        /**
+         * @return the number of the reload which built this role model, filtered role models keep the number of their origin
+         */
+        public long getGeneration() {
+            return generation;
         }
 
         private SgRoles addSgRole(SgRole sgRole) {
@@ -236,7 +376,7 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
 
         public SgRoles filter(Set<String> keep) {
-            final SgRoles retVal = new SgRoles(roles.size());
+            final SgRoles retVal = new SgRoles(roles.size(), generation);
             for (SgRole sgr : roles) {
                 if (keep.contains(sgr.getName())) {
                     retVal.addSgRole(sgr);
@@ -389,22 +529,60 @@ public class ConfigModel implements ConfigurationChangeListener {
             roles.stream().forEach(p -> ipatterns.addAll(p.getIpatterns()));
             return ConfigModel.impliesTypePerm(ipatterns, resolved, user, actions, resolver, cs);
         }
+
+        //true if any index pattern or dls query contains ${user.*} or ${attr.*} variables
+        public boolean hasUserDependentDlsFls() {
+            for (SgRole sgr : roles) {
+                for (IndexPattern ip : sgr.ipatterns) {
+                    if (ip.isUserDependent() || ip.isDlsQueryUserDependent()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        //true if any index pattern contains ${user.*} or ${attr.*} variables
+        public boolean hasUserDependentIndexPatterns() {
+            for (SgRole sgr : roles) {
+                for (IndexPattern ip : sgr.ipatterns) {
+                    if (ip.isUserDependent()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
     }
 
+    /**
+     * Roles and all objects they refer to are immutable and can be shared between threads and reloads.
+     * Equal permission sets, index patterns, type permissions and tenants are interned, so identical
+     * definitions in different roles are only held once per node.
+     */
     public static class SgRole {
 
         private final String name;
-        private final Set<Tenant> tenants = new HashSet<>();
-        private final Set<IndexPattern> ipatterns = new HashSet<>();
-        private final Set<String> clusterPerms = new HashSet<>();
-
-        private SgRole(String name) {
+        private final ImmutableSet<Tenant> tenants;
+        private final ImmutableSet<IndexPattern> ipatterns;
+        private final ImmutableSet<String> clusterPerms;
+        private final WildcardMatcher.Matcher clusterPermsMatcher;
+        //roles are immutable and used as cache keys
+        private final int hashCode;
+
+        private SgRole(String name, ImmutableSet<Tenant> tenants, ImmutableSet<IndexPattern> ipatterns, ImmutableSet<String> clusterPerms,
+                WildcardMatcher.Matcher clusterPermsMatcher) {
             super();
             this.name = Objects.requireNonNull(name);
+            this.tenants = tenants;
+            this.ipatterns = ipatterns;
+            this.clusterPerms = clusterPerms;
+            this.clusterPermsMatcher = clusterPermsMatcher;
+            this.hashCode = computeHashCode();
         }
 
         private boolean impliesClusterPermission(String action) {
-            return WildcardMatcher.matchAny(clusterPerms, action);
+            return clusterPermsMatcher.test(action);
         }
 
         //get indices which are permitted for the given types and actions
@@ -418,8 +596,8 @@ public class ConfigModel implements ConfigurationChangeListener {
                 boolean patternMatch = false;
                 final Set<TypePerm> tperms = p.getTypePerms();
                 for (TypePerm tp : tperms) {
-                    if (WildcardMatcher.matchAny(tp.typePattern, resolved.getTypes().toArray(new String[0]))) {
-                        patternMatch = WildcardMatcher.matchAll(tp.perms.toArray(new String[0]), actions);
+                    if (tp.typePatternMatcher.matchAny(resolved.getTypes())) {
+                        patternMatch = tp.permsMatcher.matchAll(actions);
                     }
                 }
                 if (patternMatch) {
@@ -449,29 +627,12 @@ public class ConfigModel implements ConfigurationChangeListener {
             return Collections.unmodifiableSet(retVal);
         }
 
-        private SgRole addTenant(Tenant tenant) {
-            if (tenant != null) {
-                this.tenants.add(tenant);
-            }
-            return this;
-        }
-
-        private SgRole addIndexPattern(IndexPattern indexPattern) {
-            if (indexPattern != null) {
-                this.ipatterns.add(indexPattern);
-            }
-            return this;
-        }
-
-        private SgRole addClusterPerms(Collection<String> clusterPerms) {
-            if (clusterPerms != null) {
-                this.clusterPerms.addAll(clusterPerms);
-            }
-            return this;
-        }
-
         @Override
         public int hashCode() {
+            return hashCode;
+        }
+
+        private int computeHashCode() {
             final int prime = 31;
             int result = 1;
             result = prime * result + ((clusterPerms == null) ? 0 : clusterPerms.hashCode());
@@ -490,6 +651,8 @@ public class ConfigModel implements ConfigurationChangeListener {
             if (getClass() != obj.getClass())
                 return false;
             SgRole other = (SgRole) obj;
+            if (hashCode != other.hashCode)
+                return false;
             if (clusterPerms == null) {
                 if (other.clusterPerms != null)
                     return false;
@@ -521,15 +684,15 @@ public class ConfigModel implements ConfigurationChangeListener {
 
         public Set<Tenant> getTenants(User user) {
             //TODO filter out user tenants
-            return Collections.unmodifiableSet(tenants);
+            return tenants;
         }
 
         public Set<IndexPattern> getIpatterns() {
-            return Collections.unmodifiableSet(ipatterns);
+            return ipatterns;
         }
 
         public Set<String> getClusterPerms() {
-            return Collections.unmodifiableSet(clusterPerms);
+            return clusterPerms;
         }
 
         public String getName() {
@@ -541,42 +704,21 @@ public class ConfigModel implements ConfigurationChangeListener {
     //sg roles
     public static class IndexPattern {
         private final String indexPattern;
-        private String dlsQuery;
-        private final Set<String> fls = new HashSet<>();
-        private final Set<String> maskedFields = new HashSet<>();
-        private final Set<TypePerm> typePerms = new HashSet<>();
-
-        public IndexPattern(String indexPattern) {
+        private final String dlsQuery;
+        private final ImmutableSet<String> fls;
+        private final ImmutableSet<String> maskedFields;
+        private final ImmutableSet<TypePerm> typePerms;
+        //not part of the state, shared by all roles which use an equal pattern
+        private volatile ResolvedIndexPattern resolvedCache;
+
+        private IndexPattern(String indexPattern, String dlsQuery, ImmutableSet<String> fls, ImmutableSet<String> maskedFields,
+                ImmutableSet<TypePerm> typePerms) {
             super();
             this.indexPattern = Objects.requireNonNull(indexPattern);
-        }
-
-        public IndexPattern addFlsFields(List<String> flsFields) {
-            if (flsFields != null) {
-                this.fls.addAll(flsFields);
-            }
-            return this;
-        }
-
-        public IndexPattern addMaskedFields(List<String> maskedFields) {
-            if (maskedFields != null) {
-                this.maskedFields.addAll(maskedFields);
-            }
-            return this;
-        }
-
-        public IndexPattern addTypePerms(TypePerm typePerm) {
-            if (typePerm != null) {
-                this.typePerms.add(typePerm);
-            }
-            return this;
-        }
-
-        public IndexPattern setDlsQuery(String dlsQuery) {
-            if (dlsQuery != null) {
-                this.dlsQuery = dlsQuery;
-            }
-            return this;
+            this.dlsQuery = dlsQuery;
+            this.fls = fls;
+            this.maskedFields = maskedFields;
+            this.typePerms = typePerms;
         }
 
         @Override
@@ -638,21 +780,65 @@ public class ConfigModel implements ConfigurationChangeListener {
             return replaceProperties(indexPattern, user);
         }
 
+        public boolean isUserDependent() {
+            return indexPattern.contains("${");
+        }
+
+        private boolean isDlsQueryUserDependent() {
+            return dlsQuery != null && dlsQuery.contains("${");
+        }
+
         private String[] getResolvedIndexPattern(User user, IndexNameExpressionResolver resolver, ClusterService cs) {
-            String unresolved = getUnresolvedIndexPattern(user);
+            return resolve(user, resolver, cs).resolved;
+        }
+
+        //true if the given index or alias is permitted by this pattern (per resolved index per pattern)
+        private boolean matches(String indexOrAlias, User user, IndexNameExpressionResolver resolver, ClusterService cs) {
+            final ResolvedIndexPattern r = resolve(user, resolver, cs);
+            return r.concreteNames.contains(indexOrAlias) || r.unresolvedMatcher.test(indexOrAlias);
+        }
+
+        private ResolvedIndexPattern resolve(User user, IndexNameExpressionResolver resolver, ClusterService cs) {
+            final ClusterState state = cs.state();
+            final String clusterUUID = state.metaData().clusterUUID();
+            final long metaDataVersion = state.metaData().version();
+
+            //patterns without user variables resolve to the same indices for all users
+            //so we compute them only once per cluster metadata version
+            final boolean userDependent = isUserDependent();
+
+            if (!userDependent) {
+                final ResolvedIndexPattern cached = this.resolvedCache;
+                if (cached != null && cached.metaDataVersion == metaDataVersion && cached.clusterUUID.equals(clusterUUID)) {
+                    return cached;
+                }
+            }
+
+            final String unresolved = getUnresolvedIndexPattern(user);
+            final ResolvedIndexPattern resolved = new ResolvedIndexPattern(clusterUUID, metaDataVersion, unresolved,
+                    resolveAgainst(unresolved, resolver, state));
+
+            if (!userDependent) {
+                this.resolvedCache = resolved;
+            }
+
+            return resolved;
+        }
+
+        private static String[] resolveAgainst(String unresolved, IndexNameExpressionResolver resolver, ClusterState state) {
             String[] resolved = null;
             if (WildcardMatcher.containsWildcard(unresolved)) {
-                final String[] aliasesForPermittedPattern = cs.state().getMetaData().getAliasAndIndexLookup().entrySet().stream()
+                final String[] aliasesForPermittedPattern = state.getMetaData().getAliasAndIndexLookup().entrySet().stream()
                         .filter(e -> e.getValue().isAlias()).filter(e -> WildcardMatcher.match(unresolved, e.getKey())).map(e -> e.getKey())
                         .toArray(String[]::new);
 
                 if (aliasesForPermittedPattern != null && aliasesForPermittedPattern.length > 0) {
-                    resolved = resolver.concreteIndexNames(cs.state(), IndicesOptions.lenientExpandOpen(), aliasesForPermittedPattern);
+                    resolved = resolver.concreteIndexNames(state, IndicesOptions.lenientExpandOpen(), aliasesForPermittedPattern);
                 }
             }
 
             if (resolved == null && !unresolved.isEmpty()) {
-                resolved = resolver.concreteIndexNames(cs.state(), IndicesOptions.lenientExpandOpen(), unresolved);
+                resolved = resolver.concreteIndexNames(state, IndicesOptions.lenientExpandOpen(), unresolved);
             }
             if (resolved == null || resolved.length == 0) {
                 return new String[] { unresolved };
@@ -669,36 +855,52 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
 
         public Set<String> getFls() {
-            return Collections.unmodifiableSet(fls);
+            return fls;
         }
 
         public Set<String> getMaskedFields() {
-            return Collections.unmodifiableSet(maskedFields);
+            return maskedFields;
         }
 
         public Set<TypePerm> getTypePerms() {
-            return Collections.unmodifiableSet(typePerms);
+            return typePerms;
         }
 
     }
 
+    //concrete indices of an index pattern for a specific cluster metadata version
+    private static class ResolvedIndexPattern {
+        private final String clusterUUID;
+        private final long metaDataVersion;
+        private final WildcardMatcher.Matcher unresolvedMatcher;
+        //must not be modified
+        private final String[] resolved;
+        private final Set<String> concreteNames;
+
+        private ResolvedIndexPattern(String clusterUUID, long metaDataVersion, String unresolved, String[] resolved) {
+            this.clusterUUID = clusterUUID;
+            this.metaDataVersion = metaDataVersion;
+            this.unresolvedMatcher = WildcardMatcher.compile(unresolved);
+            this.resolved = resolved;
+            this.concreteNames = ImmutableSet.copyOf(resolved);
+        }
+    }
+
     public static class TypePerm {
         private final String typePattern;
-        private final Set<String> perms = new HashSet<>();
+        private final WildcardMatcher.Matcher typePatternMatcher;
+        private final ImmutableSet<String> perms;
+        private final WildcardMatcher.Matcher permsMatcher;
 
-        private TypePerm(String typePattern) {
+        private TypePerm(String typePattern, ImmutableSet<String> perms, WildcardMatcher.Matcher permsMatcher) {
             super();
             this.typePattern = Objects.requireNonNull(typePattern);
             if (IGNORED_TYPES.contains(typePattern)) {
                 throw new RuntimeException("typepattern '" + typePattern + "' not allowed");
             }
-        }
-
-        private TypePerm addPerms(Collection<String> perms) {
-            if (perms != null) {
-                this.perms.addAll(perms);
-            }
-            return this;
+            this.typePatternMatcher = WildcardMatcher.compile(typePattern);
+            this.perms = perms;
+            this.permsMatcher = permsMatcher;
         }
 
         @Override
@@ -742,7 +944,7 @@ public class ConfigModel implements ConfigurationChangeListener {
         }
 
         public Set<String> getPerms() {
-            return Collections.unmodifiableSet(perms);
+            return perms;
         }
 
     }
@@ -841,14 +1043,14 @@ public class ConfigModel implements ConfigurationChangeListener {
             Set<String> matchingActions = new HashSet<>(Arrays.asList(actions));
             Set<String> matchingTypes = new HashSet<>(resolved.getTypes());
             for (IndexPattern p : ipatterns) {
-                if (WildcardMatcher.matchAny(p.getResolvedIndexPattern(user, resolver, cs), in)) {
+                if (p.matches(in, user, resolver, cs)) {
                     //per resolved index per pattern
                     for (String t : resolved.getTypes()) {
                         for (TypePerm tp : p.typePerms) {
-                            if (WildcardMatcher.match(tp.typePattern, t)) {
+                            if (tp.typePatternMatcher.test(t)) {
                                 matchingTypes.remove(t);
-                                for (String a : Arrays.asList(actions)) {
-                                    if (WildcardMatcher.matchAny(tp.perms, a)) {
+                                for (String a : actions) {
+                                    if (tp.permsMatcher.test(a)) {
                                         matchingActions.remove(a);
                                     }
                                 }
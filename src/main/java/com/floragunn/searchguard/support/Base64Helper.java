@@ -31,10 +31,17 @@ import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.transport.TransportAddress;
 
 import com.floragunn.searchguard.resolver.IndexResolverReplacer;
 import com.floragunn.searchguard.user.User;
@@ -42,6 +49,50 @@ import com.google.common.io.BaseEncoding;
 
 public class Base64Helper {
 
+    /**
+     * Version of the compact header format. Nodes which can read it advertise it with the
+     * node attribute {@link ConfigConstants#SG_COMPACT_HEADER_CODEC_NODE_ATTRIBUTE}
+     */
+    public static final String COMPACT_VERSION = "1";
+    //'#' is not part of the base64 alphabet so compact values can never be confused with legacy ones
+    private static final String COMPACT_PREFIX = "#" + COMPACT_VERSION;
+    private static final byte TYPE_USER = 1;
+    private static final byte TYPE_ADDRESS = 2;
+    private static final byte TYPE_STRING_SET_MAP = 3;
+
+    /**
+     * Serializes the object with the compact binary header format if compact is true and the object is
+     * a {@link User}, an {@link InetSocketAddress} or a dls/fls/masked fields map. All other objects are
+     * serialized with Java serialization.
+     */
+    public static String serializeObject(final Serializable object, final boolean compact) {
+
+        if (compact) {
+            final String serialized = serializeCompact(object);
+
+            if (serialized != null) {
+                return serialized;
+            }
+        }
+
+        return serializeObject(object);
+    }
+
+    public static boolean isCompact(final String string) {
+        return string != null && string.startsWith(COMPACT_PREFIX);
+    }
+
+    /**
+     * Converts a header value in compact format into Java serialization format for nodes which can not read the compact format
+     */
+    public static String ensureLegacy(final String string) {
+        if (isCompact(string)) {
+            return serializeObject(deserializeObject(string));
+        }
+
+        return string;
+    }
+
     public static String serializeObject(final Serializable object) {
 
         if (object == null) {
@@ -65,6 +116,10 @@ public class Base64Helper {
             throw new IllegalArgumentException("string must not be null");
         }
 
+        if (isCompact(string)) {
+            return deserializeCompact(string);
+        }
+
         SafeObjectInputStream in = null;
 
         try {
@@ -85,6 +140,100 @@ public class Base64Helper {
         }
     }
 
+    private static String serializeCompact(final Serializable object) {
+
+        if (object == null) {
+            throw new IllegalArgumentException("object must not be null");
+        }
+
+        try (BytesStreamOutput out = new BytesStreamOutput()) {
+
+            //subclasses like LdapUser carry additional state so we use java serialization for them
+            if (object.getClass() == User.class) {
+                final User user = (User) object;
+                out.writeByte(TYPE_USER);
+                out.writeString(user.getName());
+                out.writeStringCollection(new ArrayList<String>(user.getRoles()));
+                out.writeOptionalString(user.getRequestedTenant());
+                final Map<String, String> attributes = user.getCustomAttributesMap();
+                out.writeVInt(attributes.size());
+                for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+                    out.writeString(attribute.getKey());
+                    out.writeOptionalString(attribute.getValue());
+                }
+                out.writeBoolean(user.isInjected());
+            } else if (object instanceof InetSocketAddress) {
+                out.writeByte(TYPE_ADDRESS);
+                new TransportAddress((InetSocketAddress) object).writeTo(out);
+            } else if (object instanceof Map && isStringSetMap((Map<?, ?>) object)) {
+                @SuppressWarnings("unchecked")
+                final Map<String, Set<String>> map = (Map<String, Set<String>>) object;
+                out.writeByte(TYPE_STRING_SET_MAP);
+                out.writeVInt(map.size());
+                for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                    out.writeString(entry.getKey());
+                    out.writeStringCollection(new ArrayList<String>(entry.getValue()));
+                }
+            } else {
+                return null;
+            }
+
+            return COMPACT_PREFIX + BaseEncoding.base64().encode(BytesReference.toBytes(out.bytes()));
+        } catch (final IOException e) {
+            throw new ElasticsearchException(e.toString());
+        }
+    }
+
+    private static Serializable deserializeCompact(final String string) {
+
+        try (StreamInput in = StreamInput.wrap(BaseEncoding.base64().decode(string.substring(COMPACT_PREFIX.length())))) {
+
+            final byte type = in.readByte();
+
+            switch (type) {
+            case TYPE_USER:
+                final User user = new User(in.readString(), in.readList(StreamInput::readString), null);
+                user.setRequestedTenant(in.readOptionalString());
+                final int attributeCount = in.readVInt();
+                final Map<String, String> attributes = new HashMap<>(attributeCount);
+                for (int i = 0; i < attributeCount; i++) {
+                    attributes.put(in.readString(), in.readOptionalString());
+                }
+                user.addAttributes(attributes);
+                user.setInjected(in.readBoolean());
+                return user;
+            case TYPE_ADDRESS:
+                return new TransportAddress(in).address();
+            case TYPE_STRING_SET_MAP:
+                final int size = in.readVInt();
+                final HashMap<String, Set<String>> map = new HashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    map.put(in.readString(), new HashSet<String>(in.readList(StreamInput::readString)));
+                }
+                return map;
+            default:
+                throw new ElasticsearchException("Unknown compact header type " + type);
+            }
+        } catch (final IOException | RuntimeException e) {
+            throw new ElasticsearchException(e);
+        }
+    }
+
+    static boolean isStringSetMap(final Map<?, ?> map) {
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!(entry.getKey() instanceof String) || !(entry.getValue() instanceof Set)) {
+                return false;
+            }
+
+            for (Object value : (Set<?>) entry.getValue()) {
+                if (!(value instanceof String)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
     private final static class SafeObjectInputStream extends ObjectInputStream {
 
         private static final List<String> SAFE_CLASSES = new ArrayList<>();
@@ -79,6 +79,9 @@ public class ConfigConstants {
     public static final String SG_USER = SG_CONFIG_PREFIX+"user";
     public static final String SG_USER_HEADER = SG_CONFIG_PREFIX+"user_header";
 
+    public static final String SG_COMPACT_HEADER_CODEC_NODE_ATTRIBUTE = "sg_header_codec";
+    public static final String SG_AUTH_THREAD_POOL = "searchguard_auth";
+
     public static final String SG_INJECTED_USER = "injected_user";
     
     public static final String SG_XFF_DONE = SG_CONFIG_PREFIX+"xff_done";
@@ -188,11 +191,23 @@ public class ConfigConstants {
     public static final String SEARCHGUARD_NODES_DN = "searchguard.nodes_dn";
     public static final String SEARCHGUARD_DISABLED = "searchguard.disabled";
     public static final String SEARCHGUARD_CACHE_TTL_MINUTES = "searchguard.cache.ttl_minutes";
+    public static final String SEARCHGUARD_CACHE_REFRESH_AHEAD_PERCENT = "searchguard.cache.refresh_ahead.percent";
+    public static final String SEARCHGUARD_CACHE_REFRESH_AHEAD_MAX_CONCURRENT = "searchguard.cache.refresh_ahead.max_concurrent";
+    public static final String SEARCHGUARD_PRIVILEGES_DECISION_CACHE_MAX_SIZE = "searchguard.privileges.decision_cache.max_size";
+    public static final String SEARCHGUARD_COMPACT_HEADER_CODEC_ENABLED = "searchguard.compact_header_codec.enabled";
+    public static final String SEARCHGUARD_HEADER_CACHE_MAX_SIZE = "searchguard.header_cache.max_size";
+    public static final String SEARCHGUARD_VERIFIED_CREDENTIALS_CACHE_MAX_SIZE = "searchguard.cache.verified_credentials.max_size";
+    public static final String SEARCHGUARD_AUTH_ASYNC_ENABLED = "searchguard.auth.async.enabled";
+    public static final String SEARCHGUARD_AUTH_FAILURE_LISTENERS_PUBLISH_INTERVAL = "searchguard.auth_failure_listeners.publish_interval";
     public static final String SEARCHGUARD_ALLOW_UNSAFE_DEMOCERTIFICATES = "searchguard.allow_unsafe_democertificates";
     public static final String SEARCHGUARD_ALLOW_DEFAULT_INIT_SGINDEX = "searchguard.allow_default_init_sgindex";
     public static final String SEARCHGUARD_BACKGROUND_INIT_IF_SGINDEX_NOT_EXIST = "searchguard.background_init_if_sgindex_not_exist";
 
     public static final String SEARCHGUARD_ROLES_MAPPING_RESOLUTION = "searchguard.roles_mapping_resolution";
+    public static final String SEARCHGUARD_ROLES_MAPPING_CACHE_MAX_SIZE = "searchguard.roles_mapping_cache.max_size";
+    public static final String SEARCHGUARD_DLS_FLS_CACHE_MAX_SIZE = "searchguard.dls_fls_cache.max_size";
+    public static final String SEARCHGUARD_FLS_QUERY_CACHE_COUNT = "searchguard.fls_query_cache.count";
+    public static final String SEARCHGUARD_FLS_QUERY_CACHE_SIZE = "searchguard.fls_query_cache.size";
 
     public static final String SEARCHGUARD_COMPLIANCE_HISTORY_WRITE_METADATA_ONLY = "searchguard.compliance.history.write.metadata_only";
     public static final String SEARCHGUARD_COMPLIANCE_HISTORY_READ_METADATA_ONLY = "searchguard.compliance.history.read.metadata_only";
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.support;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import com.floragunn.searchguard.user.User;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Per node cache of deserialized transport header values (user, remote address and dls/fls/masked fields maps).
+ * <p>
+ * The cache is keyed by the serialized header value itself and holds immutable snapshots of the deserialized objects.
+ * Callers always get a private copy of mutable objects so the snapshots can never be modified.
+ * Only the exact types which can be copied safely are cached, everything else (like LDAP users) is deserialized on each call.
+ * <p>
+ * One instance is created per node by the plugin and handed to all users, so nodes sharing a JVM (like in tests)
+ * never share entries or statistics.
+ */
+public final class HeaderObjectCache {
+
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private final Cache<String, Serializable> cache;
+    private final Cache<String, IndexRestrictionMap> indexRestrictionMaps;
+
+    /**
+     * @param maxSize the maximum number of cached header values, 0 disables the cache
+     */
+    public HeaderObjectCache(final int maxSize) {
+        this.cache = build(maxSize);
+        this.indexRestrictionMaps = build(maxSize);
+    }
+
+    public Serializable deserializeObject(final String string) {
+        final Serializable snapshot = getSnapshot(string);
+
+        if (!isCacheable(snapshot)) {
+            return snapshot;
+        } else if (snapshot instanceof User) {
+            return copyUser((User) snapshot);
+        } else if (snapshot instanceof Map) {
+            return copyMap(snapshot);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * @return true if the given object equals the deserialized header value. Avoids copying the cached snapshot.
+     */
+    public boolean matches(final Object object, final String string) {
+        return Objects.equals(object, getSnapshot(string));
+    }
+
+    /**
+     * @return the pre-indexed form of a serialized dls/fls/masked fields map, built only once per header value
+     */
+    @SuppressWarnings("unchecked")
+    public IndexRestrictionMap getIndexRestrictionMap(final String string) {
+        if (string == null || string.isEmpty()) {
+            return IndexRestrictionMap.of(null);
+        }
+
+        IndexRestrictionMap indexRestrictionMap = indexRestrictionMaps == null ? null : indexRestrictionMaps.getIfPresent(string);
+
+        if (indexRestrictionMap == null) {
+            //snapshots are never modified and deserialized objects which are not cached are not shared
+            indexRestrictionMap = IndexRestrictionMap.of((Map<String, Set<String>>) getSnapshot(string));
+
+            if (indexRestrictionMaps != null) {
+                indexRestrictionMaps.put(string, indexRestrictionMap);
+            }
+        }
+
+        return indexRestrictionMap;
+    }
+
+    public CacheStats stats() {
+        return cache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : cache.stats();
+    }
+
+    public long size() {
+        return cache == null ? 0 : cache.size();
+    }
+
+    public void toXContent(final XContentBuilder builder) throws IOException {
+        final CacheStats stats = stats();
+        builder.startObject("header_cache");
+        builder.field("size", size());
+        builder.field("hits", stats.hitCount());
+        builder.field("misses", stats.missCount());
+        builder.endObject();
+    }
+
+    private Serializable getSnapshot(final String string) {
+        if (cache == null) {
+            return Base64Helper.deserializeObject(string);
+        }
+
+        final Serializable cached = cache.getIfPresent(string);
+
+        if (cached != null) {
+            return cached;
+        }
+
+        final Serializable deserialized = Base64Helper.deserializeObject(string);
+
+        if (!isCacheable(deserialized)) {
+            return deserialized;
+        }
+
+        final Serializable snapshot = snapshot(deserialized);
+        cache.put(string, snapshot);
+        return snapshot;
+    }
+
+    private static boolean isCacheable(final Serializable object) {
+        return object != null && (object.getClass() == User.class || object instanceof InetSocketAddress
+                || (object instanceof Map && Base64Helper.isStringSetMap((Map<?, ?>) object)));
+    }
+
+    private static Serializable snapshot(final Serializable object) {
+        if (object instanceof Map) {
+            @SuppressWarnings("unchecked")
+            final Map<String, Set<String>> map = (Map<String, Set<String>>) object;
+            final HashMap<String, Set<String>> snapshot = new HashMap<>(map.size());
+            for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+                snapshot.put(entry.getKey(), Collections.unmodifiableSet(new HashSet<String>(entry.getValue())));
+            }
+            return snapshot;
+        }
+
+        //users are never handed out directly and InetSocketAddress is immutable
+        return object;
+    }
+
+    private static User copyUser(final User user) {
+        final User copy = new User(user.getName(), user.getRoles(), null);
+        copy.setRequestedTenant(user.getRequestedTenant());
+        copy.addAttributes(user.getCustomAttributesMap());
+        copy.setInjected(user.isInjected());
+        return copy;
+    }
+
+    private static HashMap<String, Set<String>> copyMap(final Serializable snapshot) {
+        @SuppressWarnings("unchecked")
+        final Map<String, Set<String>> map = (Map<String, Set<String>>) snapshot;
+        final HashMap<String, Set<String>> copy = new HashMap<>(map.size());
+        for (Map.Entry<String, Set<String>> entry : map.entrySet()) {
+            copy.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+        }
+        return copy;
+    }
+
+    private static <V> Cache<String, V> build(final int maxSize) {
+        return maxSize > 0 ? CacheBuilder.newBuilder().maximumSize(maxSize).concurrencyLevel(16).recordStats().build() : null;
+    }
+}
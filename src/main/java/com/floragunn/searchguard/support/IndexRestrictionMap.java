@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.support;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Immutable, pre-indexed form of a dls/fls/masked fields map (index name or pattern to restrictions) which
+ * evaluates lookups exactly like {@link SgUtils#evalMap(Map, String)}.
+ * <p>
+ * Precedence is: the index name itself, "*", "_all" and then the wildcard keys in lexicographic order.
+ */
+public final class IndexRestrictionMap {
+
+    private static final IndexRestrictionMap EMPTY = new IndexRestrictionMap(Collections.emptyMap());
+
+    private final Map<String, Set<String>> map;
+    private final boolean hasStar;
+    private final boolean hasAll;
+    private final String[] wildcardKeys;
+    private final WildcardMatcher.Matcher[] wildcardMatchers;
+
+    private IndexRestrictionMap(final Map<String, Set<String>> map) {
+        this.map = map;
+        this.hasStar = map.get("*") != null;
+        this.hasAll = map.get("_all") != null;
+
+        final List<String> keys = new ArrayList<>();
+        for (final String key : new TreeSet<>(map.keySet())) {
+            if (WildcardMatcher.containsWildcard(key)) {
+                keys.add(key);
+            }
+        }
+
+        this.wildcardKeys = keys.toArray(new String[0]);
+        this.wildcardMatchers = new WildcardMatcher.Matcher[wildcardKeys.length];
+        for (int i = 0; i < wildcardKeys.length; i++) {
+            wildcardMatchers[i] = WildcardMatcher.compile(wildcardKeys[i]);
+        }
+    }
+
+    /**
+     * @param map must not be modified afterwards
+     */
+    public static IndexRestrictionMap of(final Map<String, Set<String>> map) {
+        return map == null || map.isEmpty() ? EMPTY : new IndexRestrictionMap(map);
+    }
+
+    /**
+     * @return the key of the map which applies to the index or null if the index is not restricted
+     */
+    public String evalKey(final String index) {
+
+        if (map.get(index) != null) {
+            return index;
+        } else if (hasStar) {
+            return "*";
+        }
+        if (hasAll) {
+            return "_all";
+        }
+
+        for (int i = 0; i < wildcardMatchers.length; i++) {
+            if (wildcardMatchers[i].test(index)) {
+                return wildcardKeys[i];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the restrictions which apply to the index or null if the index is not restricted
+     */
+    public Set<String> get(final String index) {
+        final String key = evalKey(index);
+        return key == null ? null : map.get(key);
+    }
+
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+}
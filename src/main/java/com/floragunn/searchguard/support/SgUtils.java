@@ -81,15 +81,17 @@ public final class SgUtils {
             return "_all";
         }
 
-        //regex
+        //regex, the lexicographically first matching key wins (see IndexRestrictionMap)
+        String match = null;
         for(final String key: map.keySet()) {
-            if(WildcardMatcher.containsWildcard(key)
+            if((match == null || key.compareTo(match) < 0)
+                    && WildcardMatcher.containsWildcard(key)
                     && WildcardMatcher.match(key, index)) {
-                return key;
+                match = key;
             }
         }
 
-        return null;
+        return match;
     }
     
     @SafeVarargs
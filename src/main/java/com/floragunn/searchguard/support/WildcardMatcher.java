@@ -18,16 +18,23 @@
 package com.floragunn.searchguard.support;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class WildcardMatcher {
 
+    private static final Logger log = LogManager.getLogger(WildcardMatcher.class);
     private static final int NOT_FOUND = -1;
 
     /**
@@ -425,6 +432,299 @@ public class WildcardMatcher {
     }
 
 
+    /**
+     * Compiles a pattern into an immutable and thread safe {@link Matcher}. The returned matcher
+     * behaves exactly like {@link #match(String, String)} but does the pattern analysis only once.
+     * Invalid regular expressions are logged and compiled to {@link Matcher#NONE}.
+     *
+     * @param pattern
+     * @return
+     */
+    public static Matcher compile(final String pattern) {
+        return compile(pattern, false);
+    }
+
+    public static Matcher compile(String pattern, final boolean ignoreCase) {
+
+        if (pattern == null) {
+            return Matcher.NONE;
+        }
+
+        if (ignoreCase) {
+            pattern = pattern.toLowerCase();
+        }
+
+        final Matcher matcher;
+
+        if (pattern.length() > 1 && pattern.startsWith("/") && pattern.endsWith("/")) {
+            try {
+                matcher = new RegexMatcher(Pattern.compile("^" + pattern.substring(1, pattern.length() - 1) + "$"));
+            } catch (PatternSyntaxException e) {
+                //one invalid pattern must not fail the compilation of the whole configuration
+                log.error("Invalid regular expression {}, it will never match: {}", pattern, e.getMessage());
+                return Matcher.NONE;
+            }
+        } else if (pattern.length() == 1 && pattern.charAt(0) == '*') {
+            return Matcher.ANY;
+        } else if (pattern.indexOf('?') == NOT_FOUND && pattern.indexOf('*') == NOT_FOUND) {
+            matcher = new ExactMatcher(pattern);
+        } else if (pattern.indexOf('?') == NOT_FOUND && pattern.indexOf('*') == pattern.length() - 1) {
+            matcher = new PrefixMatcher(pattern.substring(0, pattern.length() - 1));
+        } else if (pattern.indexOf('?') == NOT_FOUND && pattern.lastIndexOf('*') == 0) {
+            matcher = new SuffixMatcher(pattern.substring(1));
+        } else {
+            matcher = new SimpleWildcardMatcher(splitOnTokens(pattern));
+        }
+
+        return ignoreCase ? new IgnoreCaseMatcher(matcher) : matcher;
+    }
+
+    /**
+     * Compiles the patterns into a single {@link Matcher} which matches if at least one of the patterns matches.
+     * Patterns without wildcards are looked up in a hash set.
+     *
+     * @param patterns
+     * @return
+     */
+    public static Matcher compile(final Collection<String> patterns) {
+        return compile(patterns, false);
+    }
+
+    public static Matcher compile(final Collection<String> patterns, final boolean ignoreCase) {
+
+        if (patterns == null || patterns.isEmpty()) {
+            return Matcher.NONE;
+        }
+
+        if (patterns.size() == 1) {
+            return compile(patterns.iterator().next(), ignoreCase);
+        }
+
+        final Set<String> exact = new HashSet<>(patterns.size());
+        final List<Matcher> others = new ArrayList<>();
+
+        for (String pattern : patterns) {
+            final Matcher matcher = compile(ignoreCase && pattern != null ? pattern.toLowerCase() : pattern, false);
+
+            if (matcher == Matcher.ANY) {
+                return Matcher.ANY;
+            } else if (matcher instanceof ExactMatcher) {
+                exact.add(((ExactMatcher) matcher).pattern);
+            } else if (matcher != Matcher.NONE) {
+                others.add(matcher);
+            }
+        }
+
+        final Matcher union = new UnionMatcher(exact, others.toArray(new Matcher[0]));
+        return ignoreCase ? new IgnoreCaseMatcher(union) : union;
+    }
+
+    /**
+     * Immutable and thread safe compiled form of one or more patterns.
+     */
+    public static abstract class Matcher implements Predicate<String> {
+
+        public static final Matcher ANY = new Matcher() {
+            @Override
+            public boolean test(String candidate) {
+                return candidate != null;
+            }
+
+            @Override
+            public String toString() {
+                return "*";
+            }
+        };
+
+        public static final Matcher NONE = new Matcher() {
+            @Override
+            public boolean test(String candidate) {
+                return false;
+            }
+
+            @Override
+            public String toString() {
+                return "<none>";
+            }
+        };
+
+        /**
+         * returns true if at least one candidate matches
+         */
+        public boolean matchAny(final Collection<String> candidates) {
+            for (String candidate : candidates) {
+                if (test(candidate)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public boolean matchAny(final String[] candidates) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (test(candidates[i])) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * returns true if all candidates match
+         */
+        public boolean matchAll(final String[] candidates) {
+            for (int i = 0; i < candidates.length; i++) {
+                if (!test(candidates[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class ExactMatcher extends Matcher {
+        private final String pattern;
+
+        private ExactMatcher(String pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return pattern.equals(candidate);
+        }
+
+        @Override
+        public String toString() {
+            return pattern;
+        }
+    }
+
+    private static final class PrefixMatcher extends Matcher {
+        private final String prefix;
+
+        private PrefixMatcher(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return candidate != null && candidate.startsWith(prefix);
+        }
+
+        @Override
+        public String toString() {
+            return prefix + "*";
+        }
+    }
+
+    private static final class SuffixMatcher extends Matcher {
+        private final String suffix;
+
+        private SuffixMatcher(String suffix) {
+            this.suffix = suffix;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return candidate != null && candidate.endsWith(suffix);
+        }
+
+        @Override
+        public String toString() {
+            return "*" + suffix;
+        }
+    }
+
+    private static final class RegexMatcher extends Matcher {
+        private final Pattern pattern;
+
+        private RegexMatcher(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return candidate != null && pattern.matcher(candidate).matches();
+        }
+
+        @Override
+        public String toString() {
+            return pattern.pattern();
+        }
+    }
+
+    private static final class SimpleWildcardMatcher extends Matcher {
+        private final String[] tokens;
+
+        private SimpleWildcardMatcher(String[] tokens) {
+            this.tokens = tokens;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return candidate != null && simpleWildcardMatch(tokens, candidate);
+        }
+
+        @Override
+        public String toString() {
+            return String.join("", tokens);
+        }
+    }
+
+    private static final class IgnoreCaseMatcher extends Matcher {
+        private final Matcher delegate;
+
+        private IgnoreCaseMatcher(Matcher delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            return candidate != null && delegate.test(candidate.toLowerCase());
+        }
+
+        @Override
+        public String toString() {
+            return delegate.toString();
+        }
+    }
+
+    private static final class UnionMatcher extends Matcher {
+        private final Set<String> exact;
+        private final Matcher[] others;
+
+        private UnionMatcher(Set<String> exact, Matcher[] others) {
+            this.exact = exact;
+            this.others = others;
+        }
+
+        @Override
+        public boolean test(String candidate) {
+            if (candidate == null) {
+                return false;
+            }
+
+            if (exact.contains(candidate)) {
+                return true;
+            }
+
+            for (int i = 0; i < others.length; i++) {
+                if (others[i].test(candidate)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return exact + " " + Arrays.toString(others);
+        }
+    }
+
+
     //All code below is copied (and slightly modified) from Apache Commons IO
 
     /*
@@ -466,7 +766,10 @@ public class WildcardMatcher {
             return false;
         }
 
-        final String[] wcs = splitOnTokens(pattern);
+        return simpleWildcardMatch(splitOnTokens(pattern), candidate);
+    }
+
+    private static boolean simpleWildcardMatch(final String[] wcs, final String candidate) {
         boolean anyChars = false;
         int textIdx = 0;
         int wcsIdx = 0;
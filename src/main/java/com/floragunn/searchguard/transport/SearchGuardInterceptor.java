@@ -30,6 +30,7 @@ import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsAction;
 import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsResponse;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.settings.Settings;
@@ -55,6 +56,7 @@ import com.floragunn.searchguard.ssl.SslExceptionHandler;
 import com.floragunn.searchguard.ssl.transport.PrincipalExtractor;
 import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 import com.floragunn.searchguard.user.User;
 import com.google.common.collect.Maps;
 
@@ -62,6 +64,8 @@ public class SearchGuardInterceptor {
 
     protected final Logger actionTrace = LogManager.getLogger("sg_action_trace");
     protected final Logger log = LogManager.getLogger(getClass());
+    private static final String[] COMPACT_HEADERS = new String[] { ConfigConstants.SG_USER_HEADER, ConfigConstants.SG_REMOTE_ADDRESS_HEADER,
+            ConfigConstants.SG_DLS_QUERY_HEADER, ConfigConstants.SG_FLS_FIELDS_HEADER, ConfigConstants.SG_MASKED_FIELD_HEADER };
     private BackendRegistry backendRegistry;
     private AuditLog auditLog;
     private final ThreadPool threadPool;
@@ -71,6 +75,9 @@ public class SearchGuardInterceptor {
     private final Settings settings;
     private final SslExceptionHandler sslExceptionHandler;
     private final ClusterInfoHolder clusterInfoHolder;
+    private final boolean compactHeaderCodecEnabled;
+    private final boolean asyncAuthentication;
+    private final HeaderObjectCache headerObjectCache;
 
     public SearchGuardInterceptor(final Settings settings,
             final ThreadPool threadPool, final BackendRegistry backendRegistry,
@@ -78,7 +85,8 @@ public class SearchGuardInterceptor {
             final InterClusterRequestEvaluator requestEvalProvider,
             final ClusterService cs,
             final SslExceptionHandler sslExceptionHandler,
-            final ClusterInfoHolder clusterInfoHolder) {
+            final ClusterInfoHolder clusterInfoHolder,
+            final HeaderObjectCache headerObjectCache) {
         this.backendRegistry = backendRegistry;
         this.auditLog = auditLog;
         this.threadPool = threadPool;
@@ -88,12 +96,15 @@ public class SearchGuardInterceptor {
         this.settings = settings;
         this.sslExceptionHandler = sslExceptionHandler;
         this.clusterInfoHolder = clusterInfoHolder;
+        this.compactHeaderCodecEnabled = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_COMPACT_HEADER_CODEC_ENABLED, true);
+        this.asyncAuthentication = settings.getAsBoolean(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, false);
+        this.headerObjectCache = headerObjectCache;
     }
 
     public <T extends TransportRequest> SearchGuardRequestHandler<T> getHandler(String action,
             TransportRequestHandler<T> actualHandler) {
         return new SearchGuardRequestHandler<T>(action, actualHandler, threadPool, backendRegistry, auditLog,
-                principalExtractor, requestEvalProvider, cs, sslExceptionHandler);
+                principalExtractor, requestEvalProvider, cs, sslExceptionHandler, asyncAuthentication, headerObjectCache);
     }
 
     public <T extends TransportResponse> void sendRequestDecorate(AsyncSender sender, Connection connection, String action,
@@ -165,9 +176,21 @@ public class SearchGuardInterceptor {
                 }
             }
 
+            final boolean compact = supportsCompactHeaders(connection.getNode());
+
+            if (!compact) {
+                //the receiving node (older version or remote cluster) can only read java serialized headers
+                for (String header : COMPACT_HEADERS) {
+                    final String value = headerMap.get(header);
+                    if (Base64Helper.isCompact(value)) {
+                        headerMap.put(header, Base64Helper.ensureLegacy(value));
+                    }
+                }
+            }
+
             getThreadContext().putHeader(headerMap);
 
-            ensureCorrectHeaders(remoteAdress0, user0, origin0);
+            ensureCorrectHeaders(remoteAdress0, user0, origin0, compact);
 
             if(actionTrace.isTraceEnabled()) {
                 getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" IC -> "+action+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
@@ -177,7 +200,12 @@ public class SearchGuardInterceptor {
         }
     }
 
-    private void ensureCorrectHeaders(final Object remoteAdr, final User origUser, final String origin) {
+    private boolean supportsCompactHeaders(final DiscoveryNode node) {
+        return compactHeaderCodecEnabled && node != null
+                && Base64Helper.COMPACT_VERSION.equals(node.getAttributes().get(ConfigConstants.SG_COMPACT_HEADER_CODEC_NODE_ATTRIBUTE));
+    }
+
+    private void ensureCorrectHeaders(final Object remoteAdr, final User origUser, final String origin, final boolean compact) {
         // keep original address
 
         if(origin != null && !origin.isEmpty() /*&& !Origin.LOCAL.toString().equalsIgnoreCase(origin)*/ && getThreadContext().getHeader(ConfigConstants.SG_ORIGIN_HEADER) == null) {
@@ -193,7 +221,7 @@ public class SearchGuardInterceptor {
             String remoteAddressHeader = getThreadContext().getHeader(ConfigConstants.SG_REMOTE_ADDRESS_HEADER);
 
             if(remoteAddressHeader == null) {
-                getThreadContext().putHeader(ConfigConstants.SG_REMOTE_ADDRESS_HEADER, Base64Helper.serializeObject(((TransportAddress) remoteAdr).address()));
+                getThreadContext().putHeader(ConfigConstants.SG_REMOTE_ADDRESS_HEADER, Base64Helper.serializeObject(((TransportAddress) remoteAdr).address(), compact));
             }
         }
 
@@ -201,7 +229,7 @@ public class SearchGuardInterceptor {
             String userHeader = getThreadContext().getHeader(ConfigConstants.SG_USER_HEADER);
 
             if(userHeader == null) {
-                getThreadContext().putHeader(ConfigConstants.SG_USER_HEADER, Base64Helper.serializeObject(origUser));
+                getThreadContext().putHeader(ConfigConstants.SG_USER_HEADER, Base64Helper.serializeObject(origUser, compact));
             }
         }
     }
@@ -17,6 +17,7 @@
 
 package com.floragunn.searchguard.transport;
 
+import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.security.cert.X509Certificate;
 import java.util.Objects;
@@ -31,6 +32,7 @@ import org.elasticsearch.action.bulk.BulkShardRequest;
 import org.elasticsearch.action.support.replication.TransportReplicationAction.ConcreteShardRequest;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.ThreadContext;
 import org.elasticsearch.tasks.Task;
 import org.elasticsearch.threadpool.ThreadPool;
@@ -47,9 +49,9 @@ import com.floragunn.searchguard.ssl.transport.PrincipalExtractor;
 import com.floragunn.searchguard.ssl.transport.SearchGuardSSLRequestHandler;
 import com.floragunn.searchguard.ssl.util.ExceptionUtils;
 import com.floragunn.searchguard.ssl.util.SSLRequestHelper;
-import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
 import com.floragunn.searchguard.support.HeaderHelper;
+import com.floragunn.searchguard.support.HeaderObjectCache;
 import com.floragunn.searchguard.user.User;
 import com.google.common.base.Strings;
 
@@ -60,6 +62,9 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
     private final AuditLog auditLog;
     private final InterClusterRequestEvaluator requestEvalProvider;
     private final ClusterService cs;
+    private final ThreadPool threadPool;
+    private final boolean asyncAuthentication;
+    private final HeaderObjectCache headerObjectCache;
 
     SearchGuardRequestHandler(String action,
             final TransportRequestHandler<T> actualHandler,
@@ -69,12 +74,17 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
             final PrincipalExtractor principalExtractor,
             final InterClusterRequestEvaluator requestEvalProvider,
             final ClusterService cs,
-            final SslExceptionHandler sslExceptionHandler) {
+            final SslExceptionHandler sslExceptionHandler,
+            final boolean asyncAuthentication,
+            final HeaderObjectCache headerObjectCache) {
         super(action, actualHandler, threadPool, principalExtractor, sslExceptionHandler);
         this.backendRegistry = backendRegistry;
         this.auditLog = auditLog;
         this.requestEvalProvider = requestEvalProvider;
         this.cs = cs;
+        this.threadPool = threadPool;
+        this.asyncAuthentication = asyncAuthentication;
+        this.headerObjectCache = headerObjectCache;
     }
 
     @Override
@@ -121,13 +131,13 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
                 final String userHeader = getThreadContext().getHeader(ConfigConstants.SG_USER_HEADER);
 
                 if(!Strings.isNullOrEmpty(userHeader)) {
-                    getThreadContext().putTransient(ConfigConstants.SG_USER, Objects.requireNonNull((User) Base64Helper.deserializeObject(userHeader)));
+                    getThreadContext().putTransient(ConfigConstants.SG_USER, Objects.requireNonNull((User) headerObjectCache.deserializeObject(userHeader)));
                 }
 
                 final String originalRemoteAddress = getThreadContext().getHeader(ConfigConstants.SG_REMOTE_ADDRESS_HEADER);
 
                 if(!Strings.isNullOrEmpty(originalRemoteAddress)) {
-                    getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, new TransportAddress((InetSocketAddress) Base64Helper.deserializeObject(originalRemoteAddress)));
+                    getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, new TransportAddress((InetSocketAddress) headerObjectCache.deserializeObject(originalRemoteAddress)));
                 }
 
                 if(actionTrace.isTraceEnabled()) {
@@ -181,13 +191,13 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
                         //user can be null when a node client wants connect
                         //getThreadContext().putTransient(ConfigConstants.SG_USER, User.SG_INTERNAL);
                     } else {
-                        getThreadContext().putTransient(ConfigConstants.SG_USER, Objects.requireNonNull((User) Base64Helper.deserializeObject(userHeader)));
+                        getThreadContext().putTransient(ConfigConstants.SG_USER, Objects.requireNonNull((User) headerObjectCache.deserializeObject(userHeader)));
                     }
 
                     String originalRemoteAddress = getThreadContext().getHeader(ConfigConstants.SG_REMOTE_ADDRESS_HEADER);
 
                     if(!Strings.isNullOrEmpty(originalRemoteAddress)) {
-                        getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, new TransportAddress((InetSocketAddress) Base64Helper.deserializeObject(originalRemoteAddress)));
+                        getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, new TransportAddress((InetSocketAddress) headerObjectCache.deserializeObject(originalRemoteAddress)));
                     } else {
                         getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, request.remoteAddress());
                     }
@@ -207,57 +217,35 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
 
                     //TODO SG6 exception handling, introduce authexception
 
-                    User user;
-                    //try {
-                        if((user = backendRegistry.authenticate(request, principal, task, task.getAction())) == null) {
-                            org.apache.logging.log4j.ThreadContext.remove("user");
-                           
-                            if(task.getAction().equals(WhoAmIAction.NAME)) {
-                                super.messageReceivedDecorate(request, handler, transportChannel, task);
-                                return;
-                            }
+                    if(asyncAuthentication) {
+                        //backend calls must not block the network thread, continue on the auth thread pool
+                        final String principal0 = principal;
+                        final String resolvedActionClass0 = resolvedActionClass;
 
-                            if(task.getAction().equals("cluster:monitor/nodes/liveness")
-                                    || task.getAction().equals("internal:transport/handshake")) {
-                                super.messageReceivedDecorate(request, handler, transportChannel, task);
-                                return;
-                            }
+                        threadPool.executor(ConfigConstants.SG_AUTH_THREAD_POOL).execute(getThreadContext().preserveContext(new AbstractRunnable() {
 
+                            @Override
+                            protected void doRun() throws Exception {
+                                authenticateAndContinue(request, handler, transportChannel, task, principal0, initialActionClassValue, resolvedActionClass0);
+                            }
 
-                            log.error("Cannot authenticate {} for {}", getThreadContext().getTransient(ConfigConstants.SG_USER), task.getAction());
-                            transportChannel.sendResponse(new ElasticsearchSecurityException("Cannot authenticate "+getThreadContext().getTransient(ConfigConstants.SG_USER)));
-                            return;
-                        } else {
-                            // make it possible to filter logs by username
-                            org.apache.logging.log4j.ThreadContext.put("user", user.getName());
-                        }
-                    //} catch (Exception e) {
-                        //    log.error("Error authentication transport user "+e, e);
-                        //auditLog.logFailedLogin(principal, false, null, request);
-                        //transportChannel.sendResponse(ExceptionsHelper.convertToElastic(e));
-                        //return;
-                        //}
-
-                    getThreadContext().putTransient(ConfigConstants.SG_USER, user);
-                    TransportAddress originalRemoteAddress = request.remoteAddress();
-
-                    if(originalRemoteAddress != null && (originalRemoteAddress instanceof TransportAddress)) {
-                        getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, originalRemoteAddress);
-                    } else {
-                        log.error("Request has no proper remote address {}", originalRemoteAddress);
-                        transportChannel.sendResponse(new ElasticsearchException("Request has no proper remote address"));
+                            @Override
+                            public void onFailure(Exception e) {
+                                try {
+                                    transportChannel.sendResponse(e);
+                                } catch (IOException e1) {
+                                    log.error("Unable to send failure response", e1);
+                                }
+                            }
+                        }));
                         return;
                     }
-                }
 
-                if(actionTrace.isTraceEnabled()) {
-                    getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" NETTI -> "+transportChannel.getChannelType()+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
+                    authenticateAndContinue(request, handler, transportChannel, task, principal, initialActionClassValue, resolvedActionClass);
+                    return;
                 }
 
-                
-                putInitialActionClassHeader(initialActionClassValue, resolvedActionClass);
-                
-                super.messageReceivedDecorate(request, handler, transportChannel, task);
+                continueDecorate(request, handler, transportChannel, task, initialActionClassValue, resolvedActionClass);
             }
         } finally {
 
@@ -271,6 +259,66 @@ public class SearchGuardRequestHandler<T extends TransportRequest> extends Searc
         }
     }
     
+    private void authenticateAndContinue(final T request, final TransportRequestHandler<T> handler, final TransportChannel transportChannel,
+            final Task task, final String principal, final String initialActionClassValue, final String resolvedActionClass) throws Exception {
+
+        User user;
+        //try {
+            if((user = backendRegistry.authenticate(request, principal, task, task.getAction())) == null) {
+                org.apache.logging.log4j.ThreadContext.remove("user");
+               
+                if(task.getAction().equals(WhoAmIAction.NAME)) {
+                    super.messageReceivedDecorate(request, handler, transportChannel, task);
+                    return;
+                }
+
+                if(task.getAction().equals("cluster:monitor/nodes/liveness")
+                        || task.getAction().equals("internal:transport/handshake")) {
+                    super.messageReceivedDecorate(request, handler, transportChannel, task);
+                    return;
+                }
+
+
+                log.error("Cannot authenticate {} for {}", getThreadContext().getTransient(ConfigConstants.SG_USER), task.getAction());
+                transportChannel.sendResponse(new ElasticsearchSecurityException("Cannot authenticate "+getThreadContext().getTransient(ConfigConstants.SG_USER)));
+                return;
+            } else {
+                // make it possible to filter logs by username
+                org.apache.logging.log4j.ThreadContext.put("user", user.getName());
+            }
+        //} catch (Exception e) {
+            //    log.error("Error authentication transport user "+e, e);
+            //auditLog.logFailedLogin(principal, false, null, request);
+            //transportChannel.sendResponse(ExceptionsHelper.convertToElastic(e));
+            //return;
+            //}
+
+        getThreadContext().putTransient(ConfigConstants.SG_USER, user);
+        TransportAddress originalRemoteAddress = request.remoteAddress();
+
+        if(originalRemoteAddress != null && (originalRemoteAddress instanceof TransportAddress)) {
+            getThreadContext().putTransient(ConfigConstants.SG_REMOTE_ADDRESS, originalRemoteAddress);
+        } else {
+            log.error("Request has no proper remote address {}", originalRemoteAddress);
+            transportChannel.sendResponse(new ElasticsearchException("Request has no proper remote address"));
+            return;
+        }
+
+        continueDecorate(request, handler, transportChannel, task, initialActionClassValue, resolvedActionClass);
+    }
+
+    private void continueDecorate(final T request, final TransportRequestHandler<T> handler, final TransportChannel transportChannel,
+            final Task task, final String initialActionClassValue, final String resolvedActionClass) throws Exception {
+
+        if(actionTrace.isTraceEnabled()) {
+            getThreadContext().putHeader("_sg_trace"+System.currentTimeMillis()+"#"+UUID.randomUUID().toString(), Thread.currentThread().getName()+" NETTI -> "+transportChannel.getChannelType()+" "+getThreadContext().getHeaders().entrySet().stream().filter(p->!p.getKey().startsWith("_sg_trace")).collect(Collectors.toMap(p -> p.getKey(), p -> p.getValue())));
+        }
+
+        putInitialActionClassHeader(initialActionClassValue, resolvedActionClass);
+        
+        super.messageReceivedDecorate(request, handler, transportChannel, task);
+    }
+
     private void putInitialActionClassHeader(String initialActionClassValue, String resolvedActionClass) {
         if(initialActionClassValue == null) {
             if(getThreadContext().getHeader(ConfigConstants.SG_INITIAL_ACTION_CLASS_HEADER) == null) {
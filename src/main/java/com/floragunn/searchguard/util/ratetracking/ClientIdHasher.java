@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.util.ratetracking;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.security.SecureRandom;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * Maps client ids (IP addresses or user names) to non-zero 64 bit keys for the compact, table based
+ * rate trackers and block registries.
+ * <p>
+ * IPv4 addresses are packed into the key as they are. All other ids are hashed with SipHash and a random
+ * key per instance, so collisions can not be provoked deliberately.
+ */
+public final class ClientIdHasher {
+
+    private static final long IPV4_TAG = 1L << 32;
+
+    private final HashFunction hashFunction;
+
+    public ClientIdHasher() {
+        final SecureRandom random = new SecureRandom();
+        this.hashFunction = Hashing.sipHash24(random.nextLong(), random.nextLong());
+    }
+
+    public long key(final Object clientId) {
+        if (clientId instanceof Inet4Address) {
+            final byte[] address = ((Inet4Address) clientId).getAddress();
+            return IPV4_TAG | ((address[0] & 0xFFL) << 24) | ((address[1] & 0xFFL) << 16) | ((address[2] & 0xFFL) << 8) | (address[3] & 0xFFL);
+        }
+
+        final long hash;
+
+        if (clientId instanceof InetAddress) {
+            hash = hashFunction.hashBytes(((InetAddress) clientId).getAddress()).asLong();
+        } else if (clientId instanceof CharSequence) {
+            hash = hashFunction.hashUnencodedChars((CharSequence) clientId).asLong();
+        } else {
+            hash = hashFunction.hashUnencodedChars(String.valueOf(clientId)).asLong();
+        }
+
+        //hashed keys are negative and can never collide with IPv4 keys or 0 (empty slot)
+        return hash | Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the start slot for the key in a table with 2^bits slots
+     */
+    public static int slot(final long key, final int bits) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - bits));
+    }
+
+    /**
+     * @return the number of bits for a table which can hold the given number of entries at a load factor of 0.5
+     */
+    public static int tableBits(final int maxEntries) {
+        final long size = Math.min(1L << 30, Math.max(16L, Long.highestOneBit(Math.max(1, maxEntries) - 1) << 2));
+        return Long.numberOfTrailingZeros(size);
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.util.ratetracking;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free rate tracker for a large number of clients which keeps all state in two primitive arrays.
+ * <p>
+ * Instead of the exact timestamps of {@link HeapBasedRateTracker} a sliding window counter is used: for each client
+ * the number of tries in the current and in the previous fixed time window is kept and the tries of the previous window
+ * are weighted by the part of it which still overlaps the sliding window. Both counters and the window number are packed
+ * into a single long which is updated with CAS.
+ * <p>
+ * Clients are stored as 64 bit keys (see {@link ClientIdHasher}) in an open addressing table. Slots of clients
+ * without tries in the last two windows are reused; if all slots in the probe range are in use the least recently
+ * used one is replaced, which bounds the memory like the maximum size of the heap based tracker.
+ */
+public class CompactRateTracker<ClientIdType> implements RateTracker<ClientIdType> {
+
+    private static final long CLAIMED = -1;
+    private static final int MAX_PROBES = 16;
+    private static final int MAX_COUNT = 0xFFFF;
+
+    private final long timeWindowMs;
+    private final int allowedTries;
+    private final ClientIdHasher hasher = new ClientIdHasher();
+    private final int bits;
+    private final int mask;
+    private final AtomicLongArray keys;
+    //window number (32 bits) | tries in previous window (16 bits) | tries in window (16 bits)
+    private final AtomicLongArray states;
+
+    public CompactRateTracker(long timeWindowMs, int allowedTries, int maxEntries) {
+        if (allowedTries < 2) {
+            throw new IllegalArgumentException("allowedTries must be >= 2");
+        }
+
+        this.timeWindowMs = timeWindowMs;
+        this.allowedTries = allowedTries;
+        this.bits = ClientIdHasher.tableBits(maxEntries);
+        this.mask = (1 << bits) - 1;
+        this.keys = new AtomicLongArray(1 << bits);
+        this.states = new AtomicLongArray(1 << bits);
+    }
+
+    @Override
+    public boolean track(ClientIdType clientId) {
+        final long key = hasher.key(clientId);
+        final long now = System.currentTimeMillis();
+        final long window = now / timeWindowMs;
+        final long elapsed = now % timeWindowMs;
+
+        for (;;) {
+            final int slot = slot(key, window);
+
+            if (slot < 0) {
+                continue;
+            }
+
+            final long state = states.get(slot);
+
+            if (state == CLAIMED || keys.get(slot) != key) {
+                continue;
+            }
+
+            final long stateWindow = state >>> 32;
+            final int previous;
+            int current;
+
+            if (stateWindow == window) {
+                previous = (int) ((state >>> 16) & MAX_COUNT);
+                current = (int) (state & MAX_COUNT);
+            } else if (stateWindow == window - 1) {
+                previous = (int) (state & MAX_COUNT);
+                current = 0;
+            } else {
+                previous = 0;
+                current = 0;
+            }
+
+            current = Math.min(MAX_COUNT, current + 1);
+
+            if (states.compareAndSet(slot, state, (window << 32) | ((long) previous << 16) | current)) {
+                //rounded up, so tries right after the start of a window are never underestimated
+                final long weightedPrevious = (previous * (timeWindowMs - elapsed) + timeWindowMs - 1) / timeWindowMs;
+                return weightedPrevious + current >= allowedTries;
+            }
+        }
+    }
+
+    @Override
+    public void reset(ClientIdType clientId) {
+        final long key = hasher.key(clientId);
+        final int start = ClientIdHasher.slot(key, bits);
+
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int slot = (start + i) & mask;
+            final long state = states.get(slot);
+
+            if (state != CLAIMED && keys.get(slot) == key && states.compareAndSet(slot, state, 0)) {
+                return;
+            }
+        }
+    }
+
+    //returns the slot of the key, claims one if the key is not present yet or returns -1 if the caller needs to retry
+    private int slot(final long key, final long window) {
+        final int start = ClientIdHasher.slot(key, bits);
+        int victim = -1;
+        long victimState = 0;
+        long victimWindow = Long.MAX_VALUE;
+
+        for (int i = 0; i < MAX_PROBES; i++) {
+            final int slot = (start + i) & mask;
+            final long state = states.get(slot);
+
+            if (state == CLAIMED) {
+                continue;
+            }
+
+            if (keys.get(slot) == key) {
+                return slot;
+            }
+
+            final long stateWindow = state >>> 32;
+
+            if (stateWindow < victimWindow) {
+                victim = slot;
+                victimState = state;
+                victimWindow = stateWindow;
+            }
+        }
+
+        if (victim >= 0 && states.compareAndSet(victim, victimState, CLAIMED)) {
+            keys.set(victim, key);
+            states.set(victim, window << 32);
+            return victim;
+        }
+
+        return -1;
+    }
+}
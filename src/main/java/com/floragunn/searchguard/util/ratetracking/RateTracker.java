@@ -24,8 +24,14 @@ public interface RateTracker<ClientIdType> {
     void reset(ClientIdType clientId);
 
     static <ClientIdType> RateTracker<ClientIdType> create(long timeWindowMs, int allowedTries, int maxEntries) {
+        return create(timeWindowMs, allowedTries, maxEntries, false);
+    }
+
+    static <ClientIdType> RateTracker<ClientIdType> create(long timeWindowMs, int allowedTries, int maxEntries, boolean compact) {
         if (allowedTries == 1) {
             return new SingleTryRateTracker<ClientIdType>();
+        } else if (allowedTries > 1 && compact) {
+            return new CompactRateTracker<ClientIdType>(timeWindowMs, allowedTries, maxEntries);
         } else if (allowedTries > 1) {
             return new HeapBasedRateTracker<ClientIdType>(timeWindowMs, allowedTries, maxEntries);
         } else {
@@ -46,6 +46,9 @@ public class HealthTests extends SingleClusterTest {
         assertContains(res, "*UP*");
         assertContains(res, "*strict*");
         assertNotContains(res, "*DOWN*");
+        assertContains(res, "*header_cache*");
+        assertContains(res, "*evicted_on_reload_total*");
+        assertContains(res, "*refreshed_ahead_total*");
     }
     
     @Test
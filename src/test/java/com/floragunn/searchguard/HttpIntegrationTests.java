@@ -22,8 +22,11 @@ import java.util.List;
 
 import org.apache.http.HttpStatus;
 import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.methods.HttpGet;
 import org.apache.http.message.BasicHeader;
 import org.apache.logging.log4j.core.LogEvent;
+import org.elasticsearch.action.admin.cluster.node.info.NodeInfo;
+import org.elasticsearch.action.admin.cluster.node.info.NodesInfoRequest;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest;
 import org.elasticsearch.action.admin.indices.alias.IndicesAliasesRequest.AliasActions;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
@@ -31,6 +34,7 @@ import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.support.WriteRequest.RefreshPolicy;
 import org.elasticsearch.client.transport.TransportClient;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.junit.Assert;
 import org.junit.Ignore;
@@ -247,6 +251,29 @@ public class HttpIntegrationTests extends SingleClusterTest {
             Assert.assertEquals(HttpStatus.SC_FORBIDDEN, res.getStatusCode());
         }
 
+    @Test
+    public void testHTTPBasicAsyncAuthentication() throws Exception {
+        final Settings settings = Settings.builder()
+                .put(ConfigConstants.SEARCHGUARD_AUTH_ASYNC_ENABLED, true)
+                .putList(ConfigConstants.SEARCHGUARD_AUTHCZ_REST_IMPERSONATION_USERS+".worf", "knuddel","nonexists")
+                .build();
+        setup(settings);
+        final RestHelper rh = nonSslRestHelper();
+
+        HttpResponse res = rh.executeGetRequest("_searchguard/authinfo", encodeBasicHeader("worf", "worf"));
+        Assert.assertEquals(HttpStatus.SC_OK, res.getStatusCode());
+        Assert.assertTrue(res.getBody().contains("\"user_name\":\"worf\""));
+
+        Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, rh.executeGetRequest("_searchguard/authinfo", encodeBasicHeader("worf", "wrong")).getStatusCode());
+        Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, rh.executeGetRequest("_searchguard/authinfo").getStatusCode());
+
+        res = rh.executeGetRequest("_searchguard/authinfo", new BasicHeader("sg_impersonate_as","knuddel"), encodeBasicHeader("worf", "worf"));
+        Assert.assertEquals(HttpStatus.SC_OK, res.getStatusCode());
+        Assert.assertTrue(res.getBody().contains("name=knuddel"));
+
+        Assert.assertEquals(HttpStatus.SC_OK, rh.executeGetRequest("_searchguard/health").getStatusCode());
+    }
+
     @Test
     public void testHTTPSCompressionEnabled() throws Exception {
         final Settings settings = Settings.builder()
@@ -752,6 +779,51 @@ public class HttpIntegrationTests extends SingleClusterTest {
             
     }
 
+    @Test
+    public void testClusterWideRateLimiting() throws Exception {
+        final Settings settings = Settings.builder().put(ConfigConstants.SEARCHGUARD_AUTH_FAILURE_LISTENERS_PUBLISH_INTERVAL, "100ms").build();
+        setup(Settings.EMPTY, new DynamicSgConfig().setSgConfig("sg_config_auth_ratelimiting_cluster_wide.yml"), settings, true);
+
+        final List<String> urls = new ArrayList<>();
+
+        try (TransportClient tc = getInternalTransportClient()) {
+            for (NodeInfo nodeInfo : tc.admin().cluster().nodesInfo(new NodesInfoRequest()).actionGet().getNodes()) {
+                if (nodeInfo.getHttp() != null && nodeInfo.getHttp().address() != null) {
+                    final TransportAddress address = nodeInfo.getHttp().address().publishAddress();
+                    urls.add("http://" + address.getAddress() + ":" + address.getPort() + "/");
+                }
+            }
+        }
+
+        Assert.assertTrue(urls.size() > 1);
+
+        RestHelper rh = nonSslRestHelper();
+
+        for (String url : urls) {
+            Assert.assertEquals(HttpStatus.SC_OK, rh.executeRequest(new HttpGet(url), encodeBasicHeader("nagilum", "nagilum")).getStatusCode());
+        }
+
+        //blocked on the first node only
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, rh.executeRequest(new HttpGet(urls.get(0)), encodeBasicHeader("nagilum", "wrong")).getStatusCode());
+        }
+
+        Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, rh.executeRequest(new HttpGet(urls.get(0)), encodeBasicHeader("nagilum", "nagilum")).getStatusCode());
+
+        for (String url : urls.subList(1, urls.size())) {
+            int status = HttpStatus.SC_OK;
+
+            for (int i = 0; i < 50 && status == HttpStatus.SC_OK; i++) {
+                Thread.sleep(100);
+                status = rh.executeRequest(new HttpGet(url), encodeBasicHeader("nagilum", "nagilum")).getStatusCode();
+            }
+
+            Assert.assertEquals(HttpStatus.SC_UNAUTHORIZED, status);
+        }
+
+        Assert.assertEquals(HttpStatus.SC_OK, rh.executeRequest(new HttpGet(urls.get(1)), encodeBasicHeader("worf", "worf")).getStatusCode());
+    }
+
     @Test
     public void testEnvReplace() throws Exception {
         final Settings settings = Settings.builder()
@@ -18,19 +18,33 @@
 package com.floragunn.searchguard;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
 
 import org.bouncycastle.crypto.generators.OpenBSDBCrypt;
 import org.elasticsearch.common.settings.Settings;
 import org.junit.Assert;
 import org.junit.Test;
 
+import com.floragunn.searchguard.configuration.AdminDNs;
+import com.floragunn.searchguard.support.Base64Helper;
 import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderObjectCache;
+import com.floragunn.searchguard.support.IndexRestrictionMap;
 import com.floragunn.searchguard.support.SgUtils;
 import com.floragunn.searchguard.support.WildcardMatcher;
+import com.floragunn.searchguard.user.User;
 
 public class UtilTests {
     
@@ -61,6 +75,71 @@ public class UtilTests {
         Assert.assertTrue(WildcardMatcher.containsWildcard("/(\\d{3}-\\d{2}-?\\d{4})/"));
     }
 
+    @Test
+    public void testCompiledWildcards() {
+        final List<String> patterns = Arrays.asList("a*?", "*my*index", "*my*index?", "?kibana", "?kibana?", "/(\\d{3}-?\\d{2}-?\\d{4})/",
+                "/\\S*/", "abc", "ABC", "logstash-*", "*-2019", "*", "indices:data/read/*", "cluster:monitor/*", "*kibana*");
+        final List<String> candidates = Arrays.asList("a", "aa", "ab", "myindex", "myindex1", "this_is_my_great_index", "MYindex", "kibana",
+                ".kibana", "kibana.", "?kibana.", "123-45-6789", "abc", "ABC", "logstash-2019", "logstash", "metrics-2019", "-2019",
+                "indices:data/read/search", "cluster:monitor/health", "");
+
+        for (String pattern : patterns) {
+            for (String candidate : candidates) {
+                Assert.assertEquals(pattern + " vs " + candidate, WildcardMatcher.match(pattern, candidate),
+                        WildcardMatcher.compile(pattern).test(candidate));
+                Assert.assertEquals(pattern + " vs " + candidate + " (ignore case)", WildcardMatcher.match(pattern, candidate, true),
+                        WildcardMatcher.compile(pattern, true).test(candidate));
+            }
+        }
+
+        for (String candidate : candidates) {
+            Assert.assertEquals(candidate, WildcardMatcher.matchAny(patterns, candidate), WildcardMatcher.compile(patterns).test(candidate));
+            Assert.assertEquals(candidate, WildcardMatcher.matchAny(patterns.subList(1, 5), candidate),
+                    WildcardMatcher.compile(patterns.subList(1, 5)).test(candidate));
+        }
+
+        Assert.assertFalse(WildcardMatcher.compile(Collections.<String>emptyList()).test("abc"));
+        Assert.assertFalse(WildcardMatcher.compile("*").test(null));
+        Assert.assertTrue(WildcardMatcher.compile(Arrays.asList("abc", "def*")).matchAll(new String[] { "abc", "defg" }));
+        Assert.assertFalse(WildcardMatcher.compile(Arrays.asList("abc", "def*")).matchAll(new String[] { "abc", "xyz" }));
+    }
+
+    @Test
+    public void testInvalidRegexWildcards() {
+        Assert.assertEquals(WildcardMatcher.Matcher.NONE, WildcardMatcher.compile("/(abc/"));
+        Assert.assertEquals(WildcardMatcher.Matcher.NONE, WildcardMatcher.compile("/[a-/", true));
+        Assert.assertFalse(WildcardMatcher.compile("/(abc/").test("(abc"));
+
+        //the other patterns still match
+        final WildcardMatcher.Matcher matcher = WildcardMatcher.compile(Arrays.asList("/(abc/", "def*", "/gh.*/", "xyz"));
+        Assert.assertTrue(matcher.test("defg"));
+        Assert.assertTrue(matcher.test("ghi"));
+        Assert.assertTrue(matcher.test("xyz"));
+        Assert.assertFalse(matcher.test("abc"));
+        Assert.assertFalse(matcher.test("(abc"));
+    }
+
+    @Test
+    public void testKeywordAwareFieldMatcher() {
+        final List<String> patterns = Arrays.asList("foo", "/^foo$/", "/fo+/", "/.*bar/", "fo*", "*bar", "f?o", "*", "foo.keyword", "/foo\\.keyword/");
+        final List<String> candidates = Arrays.asList("foo", "foo.keyword", "fooo", "fooo.keyword", "bar", "bar.keyword", "foobar.keyword",
+                "foo.keyword.keyword", ".keyword", "keyword", "fo.keyword");
+
+        for (String pattern : patterns) {
+            final Set<String> patternSet = new HashSet<>(Arrays.asList(pattern, "other"));
+            final Predicate<String> matcher = SearchGuardPlugin.keywordAwareMatcher(patternSet);
+
+            for (String candidate : candidates) {
+                //like before the suffix was compiled into the patterns
+                final String field = candidate.endsWith(".keyword") ? candidate.substring(0, candidate.length() - ".keyword".length()) : candidate;
+                Assert.assertEquals(pattern + " vs " + candidate, WildcardMatcher.matchAny(patternSet, field), matcher.test(candidate));
+            }
+        }
+
+        Assert.assertTrue(SearchGuardPlugin.keywordAwareMatcher(Collections.singleton("/^foo$/")).test("foo.keyword"));
+        Assert.assertFalse(SearchGuardPlugin.keywordAwareMatcher(Collections.singleton("foo")).test(null));
+    }
+
     @Test
     public void testMapFromArray() {
         Map<Object, Object> map = SgUtils.mapFromArray((Object)null);
@@ -90,6 +169,91 @@ public class UtilTests {
 
     }
     
+    @Test
+    public void testCompactHeaderCodec() {
+        User user = new User("compact_user", Arrays.asList("role1", "role2"), null);
+        user.setRequestedTenant("tenant1");
+        user.addAttributes(Collections.singletonMap("attr.x", "y"));
+
+        String compact = Base64Helper.serializeObject(user, true);
+        Assert.assertTrue(Base64Helper.isCompact(compact));
+        User deserialized = (User) Base64Helper.deserializeObject(compact);
+        assertEquals(user, deserialized);
+        assertEquals(user.getRoles(), deserialized.getRoles());
+        assertEquals("tenant1", deserialized.getRequestedTenant());
+        assertEquals("y", deserialized.getCustomAttributesMap().get("attr.x"));
+
+        String legacy = Base64Helper.ensureLegacy(compact);
+        Assert.assertFalse(Base64Helper.isCompact(legacy));
+        assertEquals(user, Base64Helper.deserializeObject(legacy));
+        assertEquals(legacy, Base64Helper.ensureLegacy(legacy));
+
+        InetSocketAddress address = new InetSocketAddress("127.0.0.1", 9300);
+        assertEquals(address, Base64Helper.deserializeObject(Base64Helper.serializeObject(address, true)));
+
+        HashMap<String, Set<String>> map = new HashMap<>();
+        map.put("index*", new HashSet<>(Arrays.asList("{\"term\":{\"a\":1}}")));
+        map.put("other", new HashSet<>(Arrays.asList("f1", "~f2")));
+        compact = Base64Helper.serializeObject(map, true);
+        Assert.assertTrue(Base64Helper.isCompact(compact));
+        assertEquals(map, Base64Helper.deserializeObject(compact));
+    }
+    
+    @Test
+    public void testHeaderObjectCache() {
+        HeaderObjectCache headerObjectCache = new HeaderObjectCache(100);
+        User user = new User("cached_user", Arrays.asList("role1"), null);
+        String serialized = Base64Helper.serializeObject(user, true);
+
+        User first = (User) headerObjectCache.deserializeObject(serialized);
+        User second = (User) headerObjectCache.deserializeObject(serialized);
+        assertEquals(1, headerObjectCache.stats().hitCount());
+        assertEquals(1, headerObjectCache.stats().missCount());
+        assertEquals(user, first);
+        Assert.assertNotSame(first, second);
+
+        first.addRole("modified");
+        Assert.assertFalse(((User) headerObjectCache.deserializeObject(serialized)).isUserInRole("modified"));
+
+        HashMap<String, Set<String>> map = new HashMap<>();
+        map.put("index*", new HashSet<>(Arrays.asList("f1")));
+        String serializedMap = Base64Helper.serializeObject(map, false);
+        assertTrue(headerObjectCache.matches(map, serializedMap));
+        assertTrue(headerObjectCache.matches(map, serializedMap));
+        Assert.assertFalse(headerObjectCache.matches(Collections.emptyMap(), serializedMap));
+        assertEquals(2, headerObjectCache.size());
+
+        //caches of other nodes in the same JVM are independent
+        HeaderObjectCache otherNodeCache = new HeaderObjectCache(100);
+        assertEquals(user, otherNodeCache.deserializeObject(serialized));
+        assertEquals(0, otherNodeCache.stats().hitCount());
+        assertEquals(1, otherNodeCache.stats().missCount());
+        assertEquals(2, headerObjectCache.size());
+
+        HeaderObjectCache disabledCache = new HeaderObjectCache(0);
+        assertEquals(user, disabledCache.deserializeObject(serialized));
+        assertEquals(0, disabledCache.size());
+    }
+    
+    @Test
+    public void testAdminDNs() {
+        AdminDNs adminDns = new AdminDNs(Settings.builder()
+                .putList(ConfigConstants.SEARCHGUARD_AUTHCZ_ADMIN_DN, "CN=kirk,OU=client,O=client,L=test,C=de").build());
+
+        for (int i = 0; i < 2; i++) {
+            //second round is answered from the verdict cache
+            assertTrue(adminDns.isAdminDN("CN=kirk,OU=client,O=client,L=test,C=de"));
+            assertTrue(adminDns.isAdminDN("cn=kirk, ou=client, o=client, l=test, c=de"));
+            assertFalse(adminDns.isAdminDN("CN=spock,OU=client,O=client,L=test,C=de"));
+            assertFalse(adminDns.isAdminDN("kirk"));
+            assertFalse(adminDns.isAdminDN("=invalid"));
+            assertFalse(adminDns.isAdminDN(null));
+        }
+
+        assertTrue(adminDns.isAdmin(new User("CN=kirk,OU=client,O=client,L=test,C=de")));
+        assertFalse(adminDns.isAdmin(new User("kirk")));
+    }
+
     @Test
     public void testEnvReplace() {
         Settings settings = Settings.EMPTY;
@@ -146,4 +310,27 @@ public class UtilTests {
             Assert.assertEquals("abv${env."+k+":-k182765ggh}xyz", SgUtils.replaceEnvVars("abv${env."+k+":-k182765ggh}xyz",settings));
         }
     }
+
+    @Test
+    public void testIndexRestrictionMap() {
+        final Map<String, Set<String>> map = new HashMap<>();
+        map.put("logs-*", new HashSet<>(Arrays.asList("a")));
+        map.put("logs-2*", new HashSet<>(Arrays.asList("b")));
+        map.put("finance", new HashSet<>(Arrays.asList("c")));
+
+        final IndexRestrictionMap indexRestrictionMap = IndexRestrictionMap.of(map);
+
+        for (String index : Arrays.asList("finance", "logs-2019", "logs-a", "other")) {
+            assertEquals(SgUtils.evalMap(map, index), indexRestrictionMap.evalKey(index));
+        }
+
+        assertEquals("logs-*", indexRestrictionMap.evalKey("logs-2019"));
+        assertEquals(new HashSet<>(Arrays.asList("c")), indexRestrictionMap.get("finance"));
+        assertEquals(null, indexRestrictionMap.get("other"));
+
+        map.put("_all", new HashSet<>(Arrays.asList("d")));
+        assertEquals("_all", IndexRestrictionMap.of(map).evalKey("logs-a"));
+        assertEquals("finance", IndexRestrictionMap.of(map).evalKey("finance"));
+        assertTrue(IndexRestrictionMap.of(null).isEmpty());
+    }
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.auth.blocking;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetAddress;
+
+import org.junit.Test;
+
+public class CompactClientBlockRegistryTest {
+
+    @Test
+    public void simpleTest() throws Exception {
+        CompactClientBlockRegistry<InetAddress> registry = new CompactClientBlockRegistry<>(60_000, 100, InetAddress.class);
+
+        assertFalse(registry.isBlocked(InetAddress.getByName("10.0.0.1")));
+        registry.block(InetAddress.getByName("10.0.0.1"));
+        registry.block(InetAddress.getByName("::1"));
+        assertTrue(registry.isBlocked(InetAddress.getByName("10.0.0.1")));
+        assertTrue(registry.isBlocked(InetAddress.getByName("::1")));
+        assertFalse(registry.isBlocked(InetAddress.getByName("10.0.0.2")));
+    }
+
+    @Test
+    public void expiryTest() throws Exception {
+        CompactClientBlockRegistry<String> registry = new CompactClientBlockRegistry<>(50, 3, String.class);
+
+        assertFalse(registry.isBlocked("a"));
+        registry.block("a");
+        assertTrue(registry.isBlocked("a"));
+        Thread.sleep(55);
+        assertFalse(registry.isBlocked("a"));
+    }
+}
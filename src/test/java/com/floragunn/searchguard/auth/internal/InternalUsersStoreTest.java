@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+public class InternalUsersStoreTest {
+
+    @Test
+    public void lookupTest() throws Exception {
+        Settings cfg = Settings.builder()
+                .put("admin.hash", "hash_admin")
+                .putList("admin.roles", "admin", "ops")
+                .put("admin.attributes.department", "it")
+                .put("admin.attributes.nested.a", "b")
+                .put("spock.hash", "hash_spock")
+                .put("spock.username", "spock_alias")
+                .put("kirk.hash", "hash_kirk")
+                .build();
+
+        InternalUsersStore store = InternalUsersStore.build(cfg);
+        assertTrue(store.isBuiltFrom(cfg));
+
+        assertEquals("hash_admin", store.getHash("admin"));
+        assertEquals(Arrays.asList("admin", "ops"), store.getRoles("admin"));
+        assertEquals("it", store.getAttributes("admin").get("department"));
+        assertTrue(store.getAttributes("admin").containsKey("nested"));
+        assertNull(store.getAttributes("admin").get("nested"));
+
+        assertEquals("hash_spock", store.getHash("spock_alias"));
+        assertEquals(Collections.emptyList(), store.getRoles("spock_alias"));
+        assertTrue(store.getAttributes("spock_alias").isEmpty());
+
+        assertEquals(Collections.emptyList(), store.getRoles("kirk"));
+        assertNull(store.getHash("unknown"));
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.auth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+import com.google.common.hash.HashCode;
+
+public class VerifiedCredentialsCacheTest {
+
+    @Test
+    public void simpleTest() throws Exception {
+        VerifiedCredentialsCache cache = new VerifiedCredentialsCache(2, 60);
+        byte[] password = "secret".getBytes(StandardCharsets.UTF_8);
+
+        HashCode key = cache.key("admin", "$2y$12$hash", password);
+        assertEquals(key, cache.key("admin", "$2y$12$hash", password));
+        assertNotEquals(key, cache.key("admin", "$2y$12$changed", password));
+        assertNotEquals(key, cache.key("admin", "$2y$12$hash", "other".getBytes(StandardCharsets.UTF_8)));
+        assertNotEquals(key, cache.key("admi", "n$2y$12$hash", password));
+
+        assertFalse(cache.isVerified(key));
+        cache.verified(key);
+        assertTrue(cache.isVerified(key));
+        assertFalse(cache.isVerified(cache.key("admin", "$2y$12$changed", password)));
+
+        //keys of other nodes never match
+        assertNotEquals(key, new VerifiedCredentialsCache(2, 60).key("admin", "$2y$12$hash", password));
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+
+package com.floragunn.searchguard.auth.limiting;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.floragunn.searchguard.util.ratetracking.CompactRateTracker;
+
+public class CompactRateTrackerTest {
+
+    @Test
+    public void simpleTest() throws Exception {
+        CompactRateTracker<String> tracker = new CompactRateTracker<>(60_000, 5, 100_000);
+
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("b"));
+        assertTrue(tracker.track("a"));
+
+        tracker.reset("a");
+        assertFalse(tracker.track("a"));
+    }
+
+    @Test
+    public void expiryTest() throws Exception {
+        CompactRateTracker<String> tracker = new CompactRateTracker<>(100, 5, 100_000);
+
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+
+        //tries older than two windows are forgotten
+        Thread.sleep(210);
+
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertFalse(tracker.track("a"));
+        assertTrue(tracker.track("a"));
+    }
+}
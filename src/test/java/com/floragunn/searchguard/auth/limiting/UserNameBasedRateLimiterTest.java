@@ -17,10 +17,13 @@
 
 package com.floragunn.searchguard.auth.limiting;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.elasticsearch.common.settings.Settings;
 import org.junit.Test;
@@ -42,4 +45,29 @@ public class UserNameBasedRateLimiterTest {
         assertTrue(rateLimiter.isBlocked(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 })));
 
     }
+
+    @Test
+    public void clusterWideTest() throws Exception {
+        Settings settings = Settings.builder().put("allowed_tries", 3).put("cluster_wide", true).build();
+
+        AddressBasedRateLimiter rateLimiter = new AddressBasedRateLimiter(settings, null);
+        AddressBasedRateLimiter remoteRateLimiter = new AddressBasedRateLimiter(settings, null);
+        List<String> published = new ArrayList<>();
+        rateLimiter.setBlockPublisher(published::add);
+        remoteRateLimiter.setBlockPublisher(published::add);
+
+        assertTrue(rateLimiter.isClusterWide());
+        rateLimiter.onAuthFailure(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 }), null, null);
+        rateLimiter.onAuthFailure(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 }), null, null);
+        assertTrue(published.isEmpty());
+        rateLimiter.onAuthFailure(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 }), null, null);
+        assertEquals(1, published.size());
+        assertEquals("1.2.3.4", published.get(0));
+
+        assertFalse(remoteRateLimiter.isBlocked(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 })));
+        remoteRateLimiter.blockFromRemote(published.get(0));
+        assertTrue(remoteRateLimiter.isBlocked(InetAddress.getByAddress(new byte[] { 1, 2, 3, 4 })));
+        //blocks from other nodes are not published again
+        assertEquals(1, published.size());
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import com.floragunn.searchguard.test.helper.config.StaticConfigurationRepository;
+
+public class ActionGroupHolderTest {
+
+    @Test
+    public void flattenTest() throws Exception {
+        final Settings actionGroups = Settings.builder()
+                .putList("READ", "indices:data/read*")
+                .putList("WRITE.permissions", "indices:data/write*")
+                .put("WRITE.readonly", true)
+                .putList("CRUD", "READ", "WRITE")
+                .putList("ALL", "CRUD", "indices:admin/*")
+                .putList("LOOP_A", "LOOP_B", "a")
+                .putList("LOOP_B", "LOOP_A", "b")
+                .putList("LOOP_C", "LOOP_D", "c")
+                .putList("LOOP_D", "LOOP_E", "d")
+                .putList("LOOP_E", "LOOP_C", "e")
+                .build();
+
+        final ActionGroupHolder holder = new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(actionGroups));
+
+        assertEquals(new HashSet<>(Arrays.asList("indices:data/read*")), holder.getGroupMembers("READ"));
+        assertEquals(new HashSet<>(Arrays.asList("indices:data/write*")), holder.getGroupMembers("WRITE"));
+        assertEquals(new HashSet<>(Arrays.asList("indices:data/read*", "indices:data/write*", "indices:admin/*")), holder.getGroupMembers("ALL"));
+        assertTrue(holder.getGroupMembers("indices:data/read/search").isEmpty());
+
+        assertEquals(new HashSet<>(Arrays.asList("indices:data/read*", "indices:data/write*", "indices:monitor/*")),
+                holder.resolvedActions(Arrays.asList("CRUD", "indices:monitor/*")));
+
+        //recursive definitions must not fail, every group of a cycle gets the members of the whole cycle
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), holder.getGroupMembers("LOOP_A"));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), holder.getGroupMembers("LOOP_B"));
+        assertEquals(new HashSet<>(Arrays.asList("c", "d", "e")), holder.getGroupMembers("LOOP_C"));
+        assertEquals(new HashSet<>(Arrays.asList("c", "d", "e")), holder.getGroupMembers("LOOP_D"));
+        assertEquals(new HashSet<>(Arrays.asList("c", "d", "e")), holder.getGroupMembers("LOOP_E"));
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.configuration;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHitCountCollector;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.RAMDirectory;
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.common.util.concurrent.ThreadContext.StoredContext;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.cache.query.QueryCache;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndicesQueryCache;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.floragunn.searchguard.support.Base64Helper;
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderObjectCache;
+
+public class FlsQueryCacheTest {
+
+    private static final QueryCachingPolicy ALWAYS_CACHE = new QueryCachingPolicy() {
+
+        @Override
+        public void onUse(Query query) {
+        }
+
+        @Override
+        public boolean shouldCache(Query query) throws IOException {
+            return true;
+        }
+    };
+
+    private static final Query QUERY = new TermQuery(new Term("f", "a"));
+
+    private final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+    private final List<Directory> directories = new ArrayList<>();
+    private final List<DirectoryReader> readers = new ArrayList<>();
+    private FlsQueryCache flsQueryCache;
+    private IndicesQueryCache nodeCache;
+
+    @Before
+    public void setUp() {
+        flsQueryCache = new FlsQueryCache(1000, 10 * 1024 * 1024, new HeaderObjectCache(HeaderObjectCache.DEFAULT_MAX_SIZE));
+        nodeCache = new IndicesQueryCache(Settings.EMPTY);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (DirectoryReader reader : readers) {
+            reader.close();
+        }
+
+        for (Directory directory : directories) {
+            directory.close();
+        }
+    }
+
+    @Test
+    public void testPartitionsAreNotShared() throws Exception {
+        final IndexSearcher searcher = searcher("logs");
+
+        search(searcher, fls("logs", "a"), null);
+        search(searcher, fls("logs", "b"), null);
+        search(searcher, null, fls("logs", "a"));
+
+        //same restrictions on this index, only the header differs
+        final Map<String, HashSet<String>> sameRestrictions = fls("logs", "a");
+        sameRestrictions.put("other", new HashSet<>(Arrays.asList("x")));
+        search(searcher, sameRestrictions, null);
+
+        final Map<String, Object> stats = stats();
+        assertEquals(3, stats.get("size"));
+        assertEquals(1, stats.get("hits"));
+        assertEquals(3, stats.get("misses"));
+
+        //the node cache must not see restricted requests
+        assertEquals(0L, nodeCache.getStats(shardId("logs")).getCacheSize());
+    }
+
+    @Test
+    public void testPartitionStats() throws Exception {
+        final IndexSearcher searcher = searcher("logs");
+
+        search(searcher, fls("logs", "a"), null);
+        search(searcher, fls("logs", "a"), null);
+        search(searcher, fls("logs", "a"), null);
+        search(searcher, fls("logs", "b"), null);
+
+        final Map<String, int[]> partitions = new HashMap<>();
+        for (Object partition : (List<?>) stats().get("partitions")) {
+            final Map<?, ?> partitionStats = (Map<?, ?>) partition;
+            partitions.put((String) partitionStats.get("id"),
+                    new int[] { (Integer) partitionStats.get("hits"), (Integer) partitionStats.get("misses") });
+        }
+
+        assertEquals(2, partitions.size());
+        final List<String> counts = new ArrayList<>();
+        for (int[] hitsAndMisses : partitions.values()) {
+            counts.add(hitsAndMisses[0] + "/" + hitsAndMisses[1]);
+        }
+        counts.sort(null);
+        assertEquals(Arrays.asList("0/1", "2/1"), counts);
+    }
+
+    @Test
+    public void testUnrestrictedUsesNodeCache() throws Exception {
+        final IndexSearcher searcher = searcher("logs");
+
+        search(searcher, null, null);
+        search(searcher, null, null);
+        //restrictions of other indices do not apply
+        search(searcher, fls("other", "a"), null);
+
+        assertEquals(2L, nodeCache.getStats(shardId("logs")).getHitCount());
+        assertEquals(1L, nodeCache.getStats(shardId("logs")).getMissCount());
+        assertEquals(0, stats().get("size"));
+    }
+
+    @Test
+    public void testClearIndex() throws Exception {
+        final IndexSearcher logs = searcher("logs");
+        final IndexSearcher other = searcher("other");
+
+        search(logs, fls("*", "a"), null);
+        search(other, fls("*", "a"), null);
+        assertEquals(2, stats().get("size"));
+
+        ((QueryCache) logs.getQueryCache()).clear("test");
+        assertEquals(1, stats().get("size"));
+
+        search(other, fls("*", "a"), null);
+        assertEquals(1, stats().get("hits"));
+    }
+
+    private IndexSearcher searcher(final String index) throws IOException {
+        final Directory directory = new RAMDirectory();
+        directories.add(directory);
+
+        //the cache ignores small segments
+        try (IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            for (int i = 0; i < 10000; i++) {
+                final Document document = new Document();
+                document.add(new StringField("f", i % 2 == 0 ? "a" : "b", Field.Store.NO));
+                writer.addDocument(document);
+            }
+            writer.forceMerge(1);
+        }
+
+        final DirectoryReader reader = ElasticsearchDirectoryReader.wrap(DirectoryReader.open(directory), shardId(index));
+        readers.add(reader);
+
+        final IndexMetaData indexMetaData = IndexMetaData.builder(index)
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+                        .put(IndexMetaData.SETTING_INDEX_UUID, "_na_"))
+                .numberOfShards(1).numberOfReplicas(0).build();
+
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        searcher.setQueryCache(flsQueryCache.forIndex(new IndexSettings(indexMetaData, Settings.EMPTY), nodeCache, threadContext));
+        searcher.setQueryCachingPolicy(ALWAYS_CACHE);
+        return searcher;
+    }
+
+    private void search(final IndexSearcher searcher, final Map<String, HashSet<String>> fls, final Map<String, HashSet<String>> maskedFields)
+            throws IOException {
+        try (StoredContext ctx = threadContext.stashContext()) {
+            if (fls != null) {
+                threadContext.putHeader(ConfigConstants.SG_FLS_FIELDS_HEADER, Base64Helper.serializeObject((Serializable) fls));
+            }
+
+            if (maskedFields != null) {
+                threadContext.putHeader(ConfigConstants.SG_MASKED_FIELD_HEADER, Base64Helper.serializeObject((Serializable) maskedFields));
+            }
+
+            final TotalHitCountCollector collector = new TotalHitCountCollector();
+            searcher.search(QUERY, collector);
+            assertEquals(5000, collector.getTotalHits());
+        }
+    }
+
+    private Map<String, Object> stats() throws IOException {
+        final XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+        flsQueryCache.toXContent(builder);
+        builder.endObject();
+
+        @SuppressWarnings("unchecked")
+        final Map<String, Object> stats = (Map<String, Object>) XContentHelper
+                .convertToMap(BytesReference.bytes(builder), false, XContentType.JSON).v2().get("fls_query_cache");
+        return stats;
+    }
+
+    private static Map<String, HashSet<String>> fls(final String index, final String... fields) {
+        final Map<String, HashSet<String>> ret = new HashMap<>();
+        ret.put(index, new HashSet<>(Arrays.asList(fields)));
+        return ret;
+    }
+
+    private static ShardId shardId(final String index) {
+        return new ShardId(index, "_na_", 0);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.privileges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.floragunn.searchguard.configuration.ActionGroupHolder;
+import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
+import com.floragunn.searchguard.sgconf.ConfigModel;
+import com.floragunn.searchguard.sgconf.ConfigModel.SgRoles;
+import com.floragunn.searchguard.test.helper.config.StaticConfigurationRepository;
+import com.floragunn.searchguard.user.User;
+
+public class PrivilegesDecisionCacheTest {
+
+    private static final Set<String> MAPPED_ROLES = Collections.singleton("sg_role");
+    private static final Set<String> ACTIONS = Collections.singleton("indices:data/read/search");
+
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private final AtomicInteger evaluations = new AtomicInteger();
+    private PrivilegesDecisionCache decisionCache;
+
+    @Before
+    public void setUp() {
+        when(clusterService.state()).thenReturn(clusterState(1));
+        decisionCache = new PrivilegesDecisionCache(clusterService, 100);
+    }
+
+    @Test
+    public void testUserDependentRolesAreNotShared() throws Exception {
+        final ConfigModel configModel = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(Settings.EMPTY)));
+        configModel.onChange(Settings.builder().putList("sg_role.indices.logs-${user.name}.*", "indices:data/read/search").build());
+        final SgRoles sgRoles = configModel.getSgRoles();
+        assertTrue(sgRoles.hasUserDependentIndexPatterns());
+
+        final User alice = new User("alice");
+        final User bob = new User("bob");
+
+        assertTrue(isAllowed(sgRoles.getGeneration(), sgRoles.hasUserDependentIndexPatterns(), alice));
+        assertFalse(isAllowed(sgRoles.getGeneration(), sgRoles.hasUserDependentIndexPatterns(), bob));
+        assertTrue(isAllowed(sgRoles.getGeneration(), sgRoles.hasUserDependentIndexPatterns(), alice));
+        assertEquals(2, evaluations.get());
+
+        //without variables users with the same roles share decisions
+        assertTrue(isAllowed(sgRoles.getGeneration(), false, alice));
+        assertTrue(isAllowed(sgRoles.getGeneration(), false, bob));
+        assertEquals(3, evaluations.get());
+    }
+
+    @Test
+    public void testInvalidationOnReload() throws Exception {
+        final User alice = new User("alice");
+
+        isAllowed(1, false, alice);
+        isAllowed(1, false, alice);
+        assertEquals(1, evaluations.get());
+
+        //the decision cache is subscribed to the roles, rolesmapping, actiongroups and config types
+        for (int i = 0; i < 4; i++) {
+            decisionCache.onChange(Settings.EMPTY);
+            assertEquals(0, decisionCache.size());
+            isAllowed(1, false, alice);
+            assertEquals(2 + i, evaluations.get());
+        }
+    }
+
+    @Test
+    public void testRolesReloadChangesGeneration() throws Exception {
+        final ConfigModel configModel = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(Settings.EMPTY)));
+        final Settings roles = Settings.builder().putList("sg_role.indices.logs-*.*", "indices:data/read/search").build();
+        configModel.onChange(roles);
+        final long generation = configModel.getSgRoles().getGeneration();
+        final User alice = new User("alice");
+
+        isAllowed(generation, false, alice);
+        configModel.onChange(roles);
+        assertNotEquals(generation, configModel.getSgRoles().getGeneration());
+        //roles filtered for a user keep the generation of the role model
+        assertEquals(configModel.getSgRoles().getGeneration(), configModel.getSgRoles().filter(MAPPED_ROLES).getGeneration());
+
+        //decisions of the previous role model are not used, even if the cache was not flushed yet
+        isAllowed(configModel.getSgRoles().getGeneration(), false, alice);
+        assertEquals(2, evaluations.get());
+    }
+
+    @Test
+    public void testInvalidationOnMetaDataChange() throws Exception {
+        final User alice = new User("alice");
+
+        isAllowed(1, false, alice);
+        isAllowed(1, false, alice);
+        assertEquals(1, evaluations.get());
+
+        //a new index or alias changes the metadata version
+        final ClusterState previous = clusterService.state();
+        final ClusterState current = clusterState(2);
+        when(clusterService.state()).thenReturn(current);
+
+        isAllowed(1, false, alice);
+        assertEquals(2, evaluations.get());
+
+        decisionCache.clusterChanged(new ClusterChangedEvent("test", current, previous));
+        assertEquals(0, decisionCache.size());
+
+        //other cluster state changes keep the entries
+        isAllowed(1, false, alice);
+        decisionCache.clusterChanged(new ClusterChangedEvent("test", ClusterState.builder(current).build(), current));
+        assertEquals(1, decisionCache.size());
+    }
+
+    private boolean isAllowed(final long generation, final boolean userDependent, final User user) {
+        return decisionCache.isAllowed(generation, MAPPED_ROLES, userDependent, user, ACTIONS, Resolved._LOCAL_ALL, 0, () -> {
+            evaluations.incrementAndGet();
+            return "alice".equals(user.getName());
+        });
+    }
+
+    private static ClusterState clusterState(final long metaDataVersion) {
+        return ClusterState.builder(ClusterName.DEFAULT).metaData(MetaData.builder().version(metaDataVersion)).build();
+    }
+}
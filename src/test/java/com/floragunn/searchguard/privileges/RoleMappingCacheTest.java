@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.privileges;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.transport.TransportAddress;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.floragunn.searchguard.auditlog.NullAuditLog;
+import com.floragunn.searchguard.configuration.ActionGroupHolder;
+import com.floragunn.searchguard.configuration.ClusterInfoHolder;
+import com.floragunn.searchguard.resolver.IndexResolverReplacer;
+import com.floragunn.searchguard.support.ConfigConstants;
+import com.floragunn.searchguard.support.HeaderObjectCache;
+import com.floragunn.searchguard.test.helper.config.StaticConfigurationRepository;
+import com.floragunn.searchguard.user.User;
+
+public class RoleMappingCacheTest {
+
+    private final ClusterService clusterService = mock(ClusterService.class);
+    private ThreadPool threadPool;
+    private TransportAddress caller;
+
+    @Before
+    public void setUp() throws Exception {
+        threadPool = new ThreadPool(Settings.builder().put("node.name", "mock").build());
+        caller = new TransportAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, 1 }), 9300);
+    }
+
+    @After
+    public void tearDown() {
+        ThreadPool.terminate(threadPool, 10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testHostNameLookup() throws Exception {
+        final PrivilegesEvaluator evaluator = evaluator("ip-hostname-lookup", Settings.EMPTY);
+        evaluator.onChange(Settings.builder().putList("sg_localhost.hosts", "localhost*").build());
+        final User user = new User("alice");
+
+        //the reverse lookup is done in the background, the first requests are mapped without the host name
+        Set<String> sgRoles = evaluator.mapSgRoles(user, caller);
+        assertEquals(Collections.emptySet(), sgRoles);
+
+        for (int i = 0; i < 100 && sgRoles.isEmpty(); i++) {
+            Thread.sleep(100);
+            sgRoles = evaluator.mapSgRoles(user, caller);
+        }
+
+        assertEquals(Collections.singleton("sg_localhost"), sgRoles);
+    }
+
+    @Test
+    public void testInvalidationOnRolesMappingChange() throws Exception {
+        final PrivilegesEvaluator evaluator = evaluator("ip-only", Settings.EMPTY);
+        final User user = new User("alice");
+
+        evaluator.onChange(Settings.builder().putList("sg_role1.users", "alice").build());
+        final Set<String> sgRoles = evaluator.mapSgRoles(user, caller);
+        assertEquals(Collections.singleton("sg_role1"), sgRoles);
+        assertSame(sgRoles, evaluator.mapSgRoles(user, caller));
+
+        evaluator.onChange(Settings.builder().putList("sg_role2.users", "alice").build());
+        assertEquals(Collections.singleton("sg_role2"), evaluator.mapSgRoles(user, caller));
+    }
+
+    @Test
+    public void testCacheDisabled() throws Exception {
+        final PrivilegesEvaluator evaluator = evaluator("ip-only",
+                Settings.builder().put(ConfigConstants.SEARCHGUARD_ROLES_MAPPING_CACHE_MAX_SIZE, 0).build());
+        final User user = new User("alice");
+
+        evaluator.onChange(Settings.builder().putList("sg_role1.users", "alice").putList("sg_role2.hosts", "127.0.0.1").build());
+        final Set<String> sgRoles = evaluator.mapSgRoles(user, caller);
+        assertEquals(2, sgRoles.size());
+
+        //without the cache every request is mapped again
+        final Set<String> mappedAgain = evaluator.mapSgRoles(user, caller);
+        assertEquals(sgRoles, mappedAgain);
+        assertNotSame(sgRoles, mappedAgain);
+    }
+
+    private PrivilegesEvaluator evaluator(final String hostsResolverMode, final Settings settings) {
+        final StaticConfigurationRepository configurationRepository = StaticConfigurationRepository.withActionGroups(Settings.EMPTY);
+        configurationRepository.persistConfiguration(ConfigConstants.CONFIGNAME_CONFIG,
+                Settings.builder().put("searchguard.dynamic.hosts_resolver_mode", hostsResolverMode).build());
+
+        final IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(Settings.EMPTY);
+        final ClusterInfoHolder clusterInfoHolder = new ClusterInfoHolder();
+
+        return new PrivilegesEvaluator(clusterService, threadPool, configurationRepository, new ActionGroupHolder(configurationRepository),
+                resolver, new NullAuditLog(), settings, null, clusterInfoHolder,
+                new IndexResolverReplacer(resolver, clusterService, clusterInfoHolder), false, new HeaderObjectCache(HeaderObjectCache.DEFAULT_MAX_SIZE));
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.sgconf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.settings.Settings;
+import org.junit.Test;
+
+import com.floragunn.searchguard.configuration.ActionGroupHolder;
+import com.floragunn.searchguard.resolver.IndexResolverReplacer.Resolved;
+import com.floragunn.searchguard.sgconf.ConfigModel.IndexPattern;
+import com.floragunn.searchguard.sgconf.ConfigModel.SgRole;
+import com.floragunn.searchguard.test.helper.config.StaticConfigurationRepository;
+import com.floragunn.searchguard.user.User;
+
+public class ConfigModelTest {
+
+    @Test
+    public void internedRolesTest() throws Exception {
+        final Settings actionGroups = Settings.builder()
+                .putList("READ", "indices:data/read*")
+                .build();
+
+        final Settings roles = Settings.builder()
+                .putList("role_a.cluster", "cluster:monitor/*")
+                .putList("role_a.indices.logs-*.*", "READ")
+                .putList("role_a.indices.logs-*._fls_", "message", "host")
+                .put("role_a.tenants.finance", "RW")
+                .putList("role_b.cluster", "cluster:monitor/*")
+                .putList("role_b.indices.logs-*.*", "READ")
+                .putList("role_b.indices.logs-*._fls_", "message", "host")
+                .put("role_b.tenants.finance", "RW")
+                .build();
+
+        final ConfigModel configModel = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(actionGroups)));
+        configModel.onChange(roles);
+
+        final Map<String, SgRole> sgRoles = new HashMap<>();
+        for (SgRole sgRole : configModel.getSgRoles().getRoles()) {
+            sgRoles.put(sgRole.getName(), sgRole);
+        }
+
+        final SgRole roleA = sgRoles.get("role_a");
+        final SgRole roleB = sgRoles.get("role_b");
+
+        assertEquals(new HashSet<>(Arrays.asList("indices:data/read*")),
+                roleA.getIpatterns().iterator().next().getTypePerms().iterator().next().getPerms());
+        assertEquals(new HashSet<>(Arrays.asList("message", "host")), roleA.getIpatterns().iterator().next().getFls());
+
+        //equal definitions of different roles are shared
+        assertSame(roleA.getClusterPerms(), roleB.getClusterPerms());
+        final IndexPattern indexPatternA = roleA.getIpatterns().iterator().next();
+        assertSame(indexPatternA, roleB.getIpatterns().iterator().next());
+        assertSame(indexPatternA.getFls(), roleB.getIpatterns().iterator().next().getFls());
+        assertSame(roleA.getTenants(null).iterator().next(), roleB.getTenants(null).iterator().next());
+    }
+
+    @Test
+    public void notSharedBetweenModelsTest() throws Exception {
+        final Settings roles = Settings.builder().putList("role_a.indices.logs-*.*", "indices:data/read*").build();
+
+        final ConfigModel configModel1 = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(Settings.EMPTY)));
+        configModel1.onChange(roles);
+        final ConfigModel configModel2 = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(Settings.EMPTY)));
+        configModel2.onChange(roles);
+
+        //index patterns hold cluster state dependent data, nodes of different clusters may run in one JVM
+        assertNotSame(configModel1.getSgRoles().getRoles().iterator().next().getIpatterns().iterator().next(),
+                configModel2.getSgRoles().getRoles().iterator().next().getIpatterns().iterator().next());
+    }
+
+    @Test
+    public void resolvedIndexPatternPerClusterTest() throws Exception {
+        final Settings roles = Settings.builder().putList("role_a.indices.logs.*", "indices:data/read*").build();
+
+        final ConfigModel configModel = new ConfigModel(new ActionGroupHolder(StaticConfigurationRepository.withActionGroups(Settings.EMPTY)));
+        configModel.onChange(roles);
+
+        final IndexNameExpressionResolver resolver = new IndexNameExpressionResolver(Settings.EMPTY);
+        final User user = new User("alice");
+        final String[] actions = new String[] { "indices:data/read/search" };
+        final ClusterService clusterService = mock(ClusterService.class);
+
+        //same metadata version, but the alias points to different indices
+        when(clusterService.state()).thenReturn(clusterState("cluster_a", "a-1"));
+        assertEquals(Collections.singleton("a-1"),
+                configModel.getSgRoles().getAllPermittedIndicesForKibana(Resolved._LOCAL_ALL, user, actions, resolver, clusterService));
+
+        when(clusterService.state()).thenReturn(clusterState("cluster_b", "b-1"));
+        assertEquals(Collections.singleton("b-1"),
+                configModel.getSgRoles().getAllPermittedIndicesForKibana(Resolved._LOCAL_ALL, user, actions, resolver, clusterService));
+    }
+
+    private static ClusterState clusterState(final String clusterUUID, final String index) {
+        final IndexMetaData indexMetaData = IndexMetaData.builder(index)
+                .settings(Settings.builder().put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT))
+                .numberOfShards(1).numberOfReplicas(0).putAlias(AliasMetaData.builder("logs")).build();
+
+        return ClusterState.builder(ClusterName.DEFAULT)
+                .metaData(MetaData.builder().clusterUUID(clusterUUID).version(1).put(indexMetaData, false)).build();
+    }
+}
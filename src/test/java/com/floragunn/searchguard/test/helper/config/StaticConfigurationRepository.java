@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015-2019 floragunn GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package com.floragunn.searchguard.test.helper.config;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.elasticsearch.common.settings.Settings;
+
+import com.floragunn.searchguard.configuration.ConfigurationChangeListener;
+import com.floragunn.searchguard.configuration.ConfigurationRepository;
+import com.floragunn.searchguard.support.ConfigConstants;
+
+/**
+ * In memory configuration repository for unit tests which do not need a cluster.
+ * Change listeners are not notified.
+ */
+public class StaticConfigurationRepository implements ConfigurationRepository {
+
+    private final Map<String, Settings> configurations = new ConcurrentHashMap<>();
+
+    public static StaticConfigurationRepository withActionGroups(final Settings actionGroups) {
+        final StaticConfigurationRepository repository = new StaticConfigurationRepository();
+        repository.persistConfiguration(ConfigConstants.CONFIGNAME_ACTION_GROUPS, actionGroups);
+        return repository;
+    }
+
+    @Override
+    public Settings getConfiguration(String configurationType) {
+        return configurations.get(configurationType);
+    }
+
+    @Override
+    public Map<String, Settings> reloadConfiguration(Collection<String> configTypes) {
+        final Map<String, Settings> ret = new HashMap<>();
+
+        for (String configType : configTypes) {
+            final Settings settings = configurations.get(configType);
+
+            if (settings != null) {
+                ret.put(configType, settings);
+            }
+        }
+
+        return ret;
+    }
+
+    @Override
+    public void persistConfiguration(String configurationType, Settings settings) {
+        configurations.put(configurationType, settings);
+    }
+
+    @Override
+    public void subscribeOnChange(String configurationType, ConfigurationChangeListener listener) {
+    }
+}